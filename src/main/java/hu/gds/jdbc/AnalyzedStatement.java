@@ -0,0 +1,230 @@
+package hu.gds.jdbc;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The result of parsing and rewriting an SQL text by {@link GdsBaseStatement}, everything needed
+ * to send it to the GDS.
+ */
+final class AnalyzedStatement {
+    final String sql;
+    final int statementCount;
+    final boolean dqlFound;
+    final boolean dmlFound;
+    final boolean onlyAttachmentDML;
+    final boolean attachmentDQL;
+    final String selectTableName;
+    final List<String> selectedFields;
+    final Map<String, byte[]> attachments;
+    /*
+        The (1-based) indexes of the JDBC parameters given as the TTL of an INSERT, a null bound to them
+        is rendered as Long.MAX_VALUE, the same way as a null literal.
+     */
+    final Set<Integer> ttlParameters;
+    /*
+        The primary keys of the tables of the UPDATE statements, as they were when the WHERE clause was rewritten
+        with them. Empty if there is no UPDATE.
+     */
+    final Map<String, List<String>> updatePrimaryKeys;
+    /*
+        For a single row INSERT ... VALUES bound from a prepared statement the SQL is also kept cut into
+        the part before the row, the row and the part after it, so the rows of the batch can be coalesced.
+        Null otherwise.
+     */
+    final String valuesPrefix;
+    final String valuesRow;
+    final String valuesSuffix;
+
+    AnalyzedStatement(String sql,
+                      int statementCount,
+                      boolean dqlFound,
+                      boolean dmlFound,
+                      boolean onlyAttachmentDML,
+                      boolean attachmentDQL,
+                      String selectTableName,
+                      List<String> selectedFields,
+                      Map<String, byte[]> attachments,
+                      Set<Integer> ttlParameters) {
+        this(sql, statementCount, dqlFound, dmlFound, onlyAttachmentDML, attachmentDQL, selectTableName,
+                selectedFields, attachments, ttlParameters, Collections.emptyMap());
+    }
+
+    AnalyzedStatement(String sql,
+                      int statementCount,
+                      boolean dqlFound,
+                      boolean dmlFound,
+                      boolean onlyAttachmentDML,
+                      boolean attachmentDQL,
+                      String selectTableName,
+                      List<String> selectedFields,
+                      Map<String, byte[]> attachments,
+                      Set<Integer> ttlParameters,
+                      Map<String, List<String>> updatePrimaryKeys) {
+        this(sql, statementCount, dqlFound, dmlFound, onlyAttachmentDML, attachmentDQL, selectTableName,
+                selectedFields, attachments, ttlParameters, updatePrimaryKeys, null, null, null);
+    }
+
+    private AnalyzedStatement(String sql,
+                              int statementCount,
+                              boolean dqlFound,
+                              boolean dmlFound,
+                              boolean onlyAttachmentDML,
+                              boolean attachmentDQL,
+                              String selectTableName,
+                              List<String> selectedFields,
+                              Map<String, byte[]> attachments,
+                              Set<Integer> ttlParameters,
+                              Map<String, List<String>> updatePrimaryKeys,
+                              String valuesPrefix,
+                              String valuesRow,
+                              String valuesSuffix) {
+        this.sql = sql;
+        this.statementCount = statementCount;
+        this.dqlFound = dqlFound;
+        this.dmlFound = dmlFound;
+        this.onlyAttachmentDML = onlyAttachmentDML;
+        this.attachmentDQL = attachmentDQL;
+        this.selectTableName = selectTableName;
+        this.selectedFields = selectedFields;
+        this.attachments = attachments;
+        this.ttlParameters = ttlParameters;
+        this.updatePrimaryKeys = updatePrimaryKeys;
+        this.valuesPrefix = valuesPrefix;
+        this.valuesRow = valuesRow;
+        this.valuesSuffix = valuesSuffix;
+    }
+
+    /**
+     * The primary keys the UPDATE statements are rewritten with.
+     */
+    interface PrimaryKeyLookup {
+        /**
+         * @return the primary key columns of the table, null if they are not at hand without a query,
+         * the analysis needing them returns null then
+         */
+        List<String> get(String tableName) throws SQLException;
+    }
+
+    /**
+     * @return true, if the UPDATE statements were rewritten with the primary keys the lookup returns now
+     * (the schema cache reloads the expired ones), so the analysis can be reused
+     */
+    boolean hasCurrentPrimaryKeys(PrimaryKeyLookup primaryKeys) throws SQLException {
+        for (Map.Entry<String, List<String>> entry : updatePrimaryKeys.entrySet()) {
+            if (!entry.getValue().equals(primaryKeys.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true, if the statement can be sent in one event together with other statements
+     */
+    boolean isPackable() {
+        return dmlFound && !onlyAttachmentDML;
+    }
+
+    /**
+     * @return true, if the row of this INSERT can be put into the same statement as the row of the other one
+     */
+    boolean isCoalescableWith(AnalyzedStatement other) {
+        return null != valuesRow
+                && null != other.valuesRow
+                && valuesPrefix.equals(other.valuesPrefix)
+                && valuesSuffix.equals(other.valuesSuffix);
+    }
+
+    /**
+     * Builds one multi-row INSERT from the rows of the coalescable INSERT statements.
+     */
+    static AnalyzedStatement coalesce(List<AnalyzedStatement> statements) {
+        AnalyzedStatement first = statements.get(0);
+        StringBuilder sql = new StringBuilder(first.valuesPrefix);
+        for (int i = 0; i < statements.size(); i++) {
+            if (0 < i) {
+                sql.append(", ");
+            }
+            sql.append(statements.get(i).valuesRow);
+        }
+        sql.append(first.valuesSuffix);
+        return first.withSql(sql.toString());
+    }
+
+    /**
+     * Packs the DML statements into one multi-statement event.
+     */
+    static AnalyzedStatement pack(List<AnalyzedStatement> statements) {
+        StringBuilder sql = new StringBuilder();
+        int statementCount = 0;
+        Map<String, byte[]> attachments = null;
+        Map<String, List<String>> updatePrimaryKeys = new HashMap<>();
+        for (AnalyzedStatement statement : statements) {
+            if (0 < sql.length()) {
+                sql.append("\n");
+            }
+            sql.append(statement.sql);
+            statementCount += statement.statementCount;
+            updatePrimaryKeys.putAll(statement.updatePrimaryKeys);
+            if (null != statement.attachments) {
+                if (null == attachments) {
+                    attachments = new HashMap<>();
+                }
+                attachments.putAll(statement.attachments);
+            }
+        }
+        return new AnalyzedStatement(sql.toString(),
+                statementCount,
+                false,
+                true,
+                false,
+                false,
+                null,
+                Collections.emptyList(),
+                attachments,
+                Collections.emptySet(),
+                updatePrimaryKeys);
+    }
+
+    /**
+     * @return the same analysis for the given SQL text, used to bind the parameters of a prepared statement.
+     */
+    AnalyzedStatement withSql(String sql) {
+        return new AnalyzedStatement(sql,
+                statementCount,
+                dqlFound,
+                dmlFound,
+                onlyAttachmentDML,
+                attachmentDQL,
+                selectTableName,
+                selectedFields,
+                attachments,
+                ttlParameters,
+                updatePrimaryKeys);
+    }
+
+    /**
+     * @return the same analysis for the given SQL text of a single row INSERT, cut at its row.
+     */
+    AnalyzedStatement withValuesRow(String sql, int rowStart, int rowEnd) {
+        return new AnalyzedStatement(sql,
+                statementCount,
+                dqlFound,
+                dmlFound,
+                onlyAttachmentDML,
+                attachmentDQL,
+                selectTableName,
+                selectedFields,
+                attachments,
+                ttlParameters,
+                updatePrimaryKeys,
+                sql.substring(0, rowStart),
+                sql.substring(rowStart, rowEnd),
+                sql.substring(rowEnd));
+    }
+}
@@ -0,0 +1,242 @@
+package hu.gds.jdbc;
+
+import hu.arheu.gds.message.data.ConsistencyType;
+import hu.gds.jdbc.resultset.AbstractGdsResultSet;
+import hu.gds.jdbc.util.Futures;
+import hu.gds.jdbc.util.PrefetchScheduler;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes the batch of a statement with as few event messages as possible.
+ * <p>
+ * The consecutive DML statements are packed into multi-statement events of at most {@code batch.size}
+ * statements, the update counts of an event are mapped back to the batch entries from the per-statement
+ * results of its acknowledgement. A failed event marks its entries {@link Statement#EXECUTE_FAILED},
+ * the rest of the batch is still executed, and the failure is reported by a {@link BatchUpdateException}
+ * carrying the counts of every entry. An entry with any refused record counts as failed, even if
+ * other records of it were accepted.
+ * <p>
+ * The consecutive rows bound to the same single row INSERT of a prepared statement are coalesced into one
+ * multi-row {@code INSERT ... VALUES (...), (...)} of at most {@code batch.size} rows, the count of every row
+ * is taken from the result of its record.
+ * <p>
+ * By default the events are sent one after the other, in the order of the batch. Setting {@code batch.window}
+ * above 1 opts in to having up to that many events in flight at once on the connection (the GDS may then apply
+ * them out of order), the acknowledgements are correlated by their request id, and the counts are put in place
+ * by the position of the chunk. The next chunk of a lane is sent from the prefetch scheduler, not from the I/O thread completing the acknowledgement.
+ */
+class BatchExecution {
+    public static final int BATCH_SIZE_DEFAULT = 1000;
+    public static final int BATCH_WINDOW_DEFAULT = 1;
+
+    private final GdsBaseStatement statement;
+    private final List<AnalyzedStatement> entries;
+    private final int[] counts;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private final AtomicInteger nextChunk = new AtomicInteger();
+    private Throwable failure;
+    private int failedEntry = -1;
+
+    BatchExecution(GdsBaseStatement statement, List<AnalyzedStatement> entries, int batchSize) {
+        this.statement = statement;
+        this.entries = entries;
+        this.counts = new int[entries.size()];
+        split(Math.max(1, batchSize));
+    }
+
+    /*
+        The consecutive rows of the same INSERT are coalesced, the consecutive packable entries are put into
+        one chunk until it reaches the batch size, the others are sent alone.
+     */
+    private void split(int batchSize) {
+        Chunk current = null;
+        for (int i = 0; i < entries.size(); i++) {
+            AnalyzedStatement entry = entries.get(i);
+            if (null != entry.valuesRow) {
+                if (null == current || !current.coalesced || i - current.start >= batchSize
+                        || !entries.get(current.start).isCoalescableWith(entry)) {
+                    current = new Chunk(i, i + 1, 1);
+                    current.coalesced = true;
+                    chunks.add(current);
+                } else {
+                    current.end = i + 1;
+                }
+            } else if (!entry.isPackable()) {
+                chunks.add(new Chunk(i, i + 1, entry.statementCount));
+                current = null;
+            } else if (null == current || current.coalesced
+                    || current.statementCount + entry.statementCount > batchSize) {
+                current = new Chunk(i, i + 1, entry.statementCount);
+                chunks.add(current);
+            } else {
+                current.end = i + 1;
+                current.statementCount += entry.statementCount;
+            }
+        }
+    }
+
+    /*
+        The chunks the batch was split into, in the order of the batch.
+     */
+    List<Chunk> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * @param window the number of events allowed to be in flight at once
+     */
+    CompletableFuture<int[]> execute(int window) {
+        CompletableFuture<?>[] lanes = new CompletableFuture<?>[Math.max(1, Math.min(window, chunks.size()))];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = executeNextChunk();
+        }
+        return CompletableFuture.allOf(lanes).thenApply(ignored -> result());
+    }
+
+    /*
+        Every lane sends the next unsent chunk when its previous event was acknowledged.
+     */
+    private CompletableFuture<Void> executeNextChunk() {
+        int index = nextChunk.getAndIncrement();
+        if (index >= chunks.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return execute(chunks.get(index)).thenComposeAsync(ignored -> executeNextChunk(), PrefetchScheduler.executor());
+    }
+
+    private CompletableFuture<Void> execute(Chunk chunk) {
+        List<AnalyzedStatement> chunkEntries = entries.subList(chunk.start, chunk.end);
+        AnalyzedStatement first = chunkEntries.get(0);
+        if (!first.dmlFound) {
+            failed(chunk, new SQLException("Only DML statements are allowed in a batch: " + first.sql));
+            return CompletableFuture.completedFuture(null);
+        }
+        AnalyzedStatement event;
+        if (1 == chunkEntries.size()) {
+            event = first;
+        } else if (chunk.coalesced) {
+            event = AnalyzedStatement.coalesce(chunkEntries);
+        } else {
+            event = AnalyzedStatement.pack(chunkEntries);
+        }
+        return statement.executeInnerAsync(event, ConsistencyType.PAGES)
+                .handle((resultSet, cause) -> {
+                    try {
+                        if (null != cause) {
+                            throw Futures.unwrap(cause);
+                        }
+                        completed(chunk, resultSet);
+                    } catch (Throwable ex) {
+                        failed(chunk, ex);
+                    }
+                    return null;
+                });
+    }
+
+    private synchronized void completed(Chunk chunk, AbstractGdsResultSet resultSet) throws SQLException {
+        if (chunk.coalesced && 1 < chunk.end - chunk.start) {
+            completedRows(chunk, resultSet.asDmlResultSet().getRecordUpdateCounts());
+            return;
+        }
+        int[] statementCounts = resultSet.asDmlResultSet().getUpdateCounts();
+        if (statementCounts.length != chunk.statementCount) {
+            Arrays.fill(counts, chunk.start, chunk.end, Statement.SUCCESS_NO_INFO);
+            return;
+        }
+        int statementIndex = 0;
+        for (int i = chunk.start; i < chunk.end; i++) {
+            int count = 0;
+            for (int j = 0; j < entries.get(i).statementCount; j++) {
+                int statementCount = statementCounts[statementIndex++];
+                if (Statement.EXECUTE_FAILED == statementCount || Statement.EXECUTE_FAILED == count) {
+                    count = Statement.EXECUTE_FAILED;
+                } else {
+                    count += statementCount;
+                }
+            }
+            counts[i] = count;
+            if (Statement.EXECUTE_FAILED == count) {
+                refused(i);
+            }
+        }
+    }
+
+    /*
+        Every row of a coalesced INSERT is one record of its result.
+     */
+    private void completedRows(Chunk chunk, int[] recordCounts) {
+        if (recordCounts.length != chunk.end - chunk.start) {
+            Arrays.fill(counts, chunk.start, chunk.end, Statement.SUCCESS_NO_INFO);
+            return;
+        }
+        for (int i = chunk.start; i < chunk.end; i++) {
+            counts[i] = recordCounts[i - chunk.start];
+            if (Statement.EXECUTE_FAILED == counts[i]) {
+                refused(i);
+            }
+        }
+    }
+
+    private void refused(int entry) {
+        if (null == failure || entry < failedEntry) {
+            failure = new SQLException("The GDS refused the records of the statement");
+            failedEntry = entry;
+        }
+    }
+
+    private synchronized void failed(Chunk chunk, Throwable cause) {
+        Arrays.fill(counts, chunk.start, chunk.end, Statement.EXECUTE_FAILED);
+        if (null == failure || chunk.start < failedEntry) {
+            failure = cause;
+            failedEntry = chunk.start;
+        }
+    }
+
+    private synchronized int[] result() {
+        if (null != failure) {
+            String message = "Batch failed for request " + failedEntry + ": "
+                    + entries.get(failedEntry).sql + " (" + failure + ")";
+            throw new CompletionException(new BatchUpdateException(message, counts.clone(), failure));
+        }
+        return counts;
+    }
+
+    static class Chunk {
+        private final int start;
+        private int end;
+        private int statementCount;
+        //the entries are rows of the same INSERT.
+        private boolean coalesced;
+
+        private Chunk(int start, int end, int statementCount) {
+            this.start = start;
+            this.end = end;
+            this.statementCount = statementCount;
+        }
+
+        int getStart() {
+            return start;
+        }
+
+        int getEnd() {
+            return end;
+        }
+
+        int getStatementCount() {
+            return statementCount;
+        }
+
+        boolean isCoalesced() {
+            return coalesced;
+        }
+    }
+}
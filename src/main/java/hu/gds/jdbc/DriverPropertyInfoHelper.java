@@ -1,6 +1,10 @@
 package hu.gds.jdbc;
 
+import hu.gds.jdbc.metainfo.SchemaCache;
 import hu.gds.jdbc.query.QueryScanConsistency;
+import hu.gds.jdbc.util.ConcurrencyLimiter;
+import hu.gds.jdbc.util.MemoryBudget;
+import hu.gds.jdbc.util.PrefetchScheduler;
 
 import java.sql.DriverPropertyInfo;
 import java.util.*;
@@ -13,6 +17,17 @@ public class DriverPropertyInfoHelper {
     public static final String KEYSTORE_PASSWORD = "keyStorePassword";
     public static final String VERIFY_SERVER_CERTIFICATE = "verifyServerCertificate";
     public static final String SERVE_ON_THE_SAME_CONNECTION = "serveOnTheSameConnection";
+    public static final String MULTIPLEX = "multiplex";
+    public static final String GATE_POLICY = "gate.policy";
+    public static final String GATE_COOL_DOWN = "gate.cooldown";
+    public static final String RECONNECT = "reconnect";
+    public static final String RECONNECT_ATTEMPTS = "reconnect.attempts";
+    public static final int RECONNECT_ATTEMPTS_DEFAULT = 10;
+    public static final String CONCURRENCY_LIMIT_INITIAL = "concurrency.limit.initial";
+    public static final String CONCURRENCY_LIMIT_MAX = "concurrency.limit.max";
+    public static final String CONCURRENCY_QUEUE_TIMEOUT = "concurrency.queue.timeout";
+    public static final String NETWORK_TIMEOUT = "network.timeout";
+    public static final int NETWORK_TIMEOUT_DEFAULT = 30_000;
     public static final String TIMEOUT = "timeout";
 
 
@@ -39,6 +54,25 @@ public class DriverPropertyInfoHelper {
 
     public static final String PREFETCH = "prefetch";
 
+    public static final String PREFETCH_MIN = "prefetch.min";
+    public static final String PREFETCH_MAX = "prefetch.max";
+    public static final int PREFETCH_MAX_DEFAULT = 16;
+
+    public static final String STATEMENT_CACHE_SIZE = "statement.cache.size";
+
+    public static final String SCHEMA_CACHE_TTL = "schema.cache.ttl";
+    public static final String SCHEMA_DISCOVERY_PARALLELISM = "schema.discovery.parallelism";
+    public static final String SCHEMA_SNAPSHOT_DIR = "schema.snapshot.dir";
+
+    public static final String BATCH_SIZE = "batch.size";
+    public static final String BATCH_WINDOW = "batch.window";
+
+    public static final String PREFETCH_MEMORY_CONNECTION = "prefetch.memory.connection";
+    public static final String PREFETCH_MEMORY_DRIVER = "prefetch.memory.driver";
+
+    public static final String PREFETCH_POOL_SIZE = "prefetch.pool.size";
+    public static final String PREFETCH_VIRTUAL_THREADS = "prefetch.virtual.threads";
+
 
     public static DriverPropertyInfo[] getPropertyInfo() {
         ArrayList<DriverPropertyInfo> propInfos = new ArrayList<>();
@@ -50,6 +84,32 @@ public class DriverPropertyInfoHelper {
         addPropInfo(propInfos, SERVE_ON_THE_SAME_CONNECTION, BOOLEAN_CHOICE_TRUE,
                 "Configure whether the replies from the GDS should be sent on this connection.",
                 BOOL_CHOICES);
+        addPropInfo(propInfos, MULTIPLEX, BOOLEAN_CHOICE_FALSE,
+                "Share one websocket connection among the connections with the same url, user and connection settings.",
+                BOOL_CHOICES);
+        addPropInfo(propInfos, GATE_POLICY, GateBalancer.POLICY_FAILOVER,
+                "The order the hosts of the url are tried in: failover (the first one available), " +
+                        "round-robin, or least-latency (by the handshake and ping round trips).",
+                GateBalancer.POLICY_CHOICES);
+        addPropInfo(propInfos, GATE_COOL_DOWN, Long.toString(GateBalancer.COOL_DOWN_DEFAULT),
+                "The milliseconds a host refusing the connection is only tried after the others.", null);
+        addPropInfo(propInfos, RECONNECT, BOOLEAN_CHOICE_FALSE,
+                "Reconnect a lost connection, and send its pending queries and next page requests again.",
+                BOOL_CHOICES);
+        addPropInfo(propInfos, RECONNECT_ATTEMPTS, Integer.toString(RECONNECT_ATTEMPTS_DEFAULT),
+                "The number of login attempts of a reconnect, with a backoff from 100 ms up to 10 s.", null);
+        addPropInfo(propInfos, CONCURRENCY_LIMIT_INITIAL, Integer.toString(ConcurrencyLimiter.INITIAL_LIMIT_DEFAULT),
+                "The number of requests a connection may have in flight before the limit is adapted to the latency.",
+                null);
+        addPropInfo(propInfos, CONCURRENCY_LIMIT_MAX, Integer.toString(ConcurrencyLimiter.MAX_LIMIT_DEFAULT),
+                "The upper bound of the adaptive limit of the requests in flight, 0 disables the limit.", null);
+        addPropInfo(propInfos, CONCURRENCY_QUEUE_TIMEOUT, null,
+                "The milliseconds a request over the limit may wait to be sent. " +
+                        "The timeout of the statements by default.", null);
+        addPropInfo(propInfos, NETWORK_TIMEOUT, Integer.toString(NETWORK_TIMEOUT_DEFAULT),
+                "The milliseconds the connect, the login and the close of a connection may take, " +
+                        "0 waits without a limit (the close still waits at most 30 seconds).",
+                null);
         addPropInfo(propInfos, USER, "", "Username used for login.", null);
         addPropInfo(propInfos, PASSWORD, "", "Password used for password authentication. " +
                 "If left empty, no password will be used.", null);
@@ -79,6 +139,38 @@ public class DriverPropertyInfoHelper {
 
 
         addPropInfo(propInfos, PREFETCH, "3", "Sets the number of prefetches", null);
+        addPropInfo(propInfos, PREFETCH_MIN, "1", "The lower bound of the adaptive prefetch depth.", null);
+        addPropInfo(propInfos, PREFETCH_MAX, Integer.toString(PREFETCH_MAX_DEFAULT),
+                "The upper bound of the adaptive prefetch depth.", null);
+        addPropInfo(propInfos, PREFETCH_MEMORY_CONNECTION, Long.toString(MemoryBudget.CONNECTION_LIMIT_DEFAULT),
+                "The estimated bytes of prefetched pages the result sets of a connection may hold, " +
+                        "the prefetch pauses above it.", null);
+        addPropInfo(propInfos, PREFETCH_MEMORY_DRIVER, Long.toString(MemoryBudget.DRIVER_LIMIT_DEFAULT),
+                "The estimated bytes of prefetched pages all the connections of the driver may hold, " +
+                        "the prefetch pauses above it. By default a quarter of the maximum heap. " +
+                        "The smallest value of the open connections wins.", null);
+        addPropInfo(propInfos, PREFETCH_POOL_SIZE, Integer.toString(PrefetchScheduler.POOL_SIZE_DEFAULT),
+                "Sets the number of threads of the driver-wide prefetch pool. " +
+                        "The pool is shared by every connection and sized by the largest value.", null);
+        addPropInfo(propInfos, PREFETCH_VIRTUAL_THREADS, BOOLEAN_CHOICE_FALSE,
+                "Use virtual threads for the prefetch instead of the pool (Java 21 or newer).", BOOL_CHOICES);
+
+        addPropInfo(propInfos, STATEMENT_CACHE_SIZE, Integer.toString(StatementCache.SIZE_DEFAULT),
+                "The number of parsed statements cached per connection, 0 disables the cache.", null);
+        addPropInfo(propInfos, SCHEMA_CACHE_TTL, Long.toString(SchemaCache.TTL_DEFAULT),
+                "The milliseconds the tables, columns and primary keys are cached for, " +
+                        "0 disables the cache, a negative value never expires it.", null);
+        addPropInfo(propInfos, SCHEMA_DISCOVERY_PARALLELISM, Integer.toString(SchemaCache.DISCOVERY_PARALLELISM_DEFAULT),
+                "The maximum number of column order probes in flight at once while the tables are discovered.", null);
+        addPropInfo(propInfos, SCHEMA_SNAPSHOT_DIR, null,
+                "The directory of the schema snapshot files, a new JVM serves the schema from them " +
+                        "while it is revalidated in the background. Not set by default (no snapshot).", null);
+
+        addPropInfo(propInfos, BATCH_SIZE, Integer.toString(BatchExecution.BATCH_SIZE_DEFAULT),
+                "The maximum number of statements of a batch sent in one event message.", null);
+        addPropInfo(propInfos, BATCH_WINDOW, Integer.toString(BatchExecution.BATCH_WINDOW_DEFAULT),
+                "The maximum number of event messages of a batch in flight at once. By default they are sent " +
+                        "one after the other, a larger value lets the GDS apply the events of a batch out of order.", null);
 
         return propInfos.toArray(new DriverPropertyInfo[0]);
     }
@@ -0,0 +1,88 @@
+package hu.gds.jdbc;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses the gate of a new connection among the hosts of the url.
+ * <p>
+ * The balancer of a host list is shared by every connection of the driver, so the latencies measured
+ * (the login handshakes and the pings of {@link GdsJdbcConnection#isValid(int)}) and the failures of a gate
+ * are known to all of them. A gate whose login failed is tried last until its cool-down expires.
+ */
+class GateBalancer {
+    static final String POLICY_FAILOVER = "failover";
+    static final String POLICY_ROUND_ROBIN = "round-robin";
+    static final String POLICY_LEAST_LATENCY = "least-latency";
+    static final String[] POLICY_CHOICES = new String[]{POLICY_FAILOVER, POLICY_ROUND_ROBIN, POLICY_LEAST_LATENCY};
+
+    static final long COOL_DOWN_DEFAULT = 30_000;
+    private static final double LATENCY_WEIGHT = 0.2;
+
+    private static final Map<String, GateBalancer> BALANCERS = new ConcurrentHashMap<>();
+
+    private final List<Gate> gates = new ArrayList<>();
+    private final AtomicInteger next = new AtomicInteger();
+
+    private GateBalancer(List<String> hosts) {
+        for (String host : hosts) {
+            gates.add(new Gate(host));
+        }
+    }
+
+    static GateBalancer of(List<String> hosts) {
+        return BALANCERS.computeIfAbsent(String.join(",", hosts), key -> new GateBalancer(hosts));
+    }
+
+    /**
+     * @return the gates in the order they should be tried by the policy, the ones cooling down at the end
+     */
+    List<Gate> order(String policy) {
+        if (gates.isEmpty()) {
+            //an url without hosts, the connect reports it
+            return Collections.emptyList();
+        }
+        List<Gate> ordered = new ArrayList<>(gates);
+        if (POLICY_ROUND_ROBIN.equals(policy)) {
+            Collections.rotate(ordered, -Math.floorMod(next.getAndIncrement(), ordered.size()));
+        } else if (POLICY_LEAST_LATENCY.equals(policy)) {
+            //the gates not measured yet come first, so they get measured
+            ordered.sort(Comparator.comparingDouble(gate -> gate.latencyMillis));
+        }
+        long now = System.currentTimeMillis();
+        List<Gate> coolingDown = new ArrayList<>();
+        for (Iterator<Gate> iterator = ordered.iterator(); iterator.hasNext(); ) {
+            Gate gate = iterator.next();
+            if (gate.coolDownUntil > now) {
+                iterator.remove();
+                coolingDown.add(gate);
+            }
+        }
+        ordered.addAll(coolingDown);
+        return ordered;
+    }
+
+    static class Gate {
+        final String host;
+        private volatile double latencyMillis = 0;
+        private volatile long coolDownUntil = 0;
+
+        private Gate(String host) {
+            this.host = host;
+        }
+
+        synchronized void recordLatency(double millis) {
+            latencyMillis = 0 == latencyMillis ? millis : latencyMillis + LATENCY_WEIGHT * (millis - latencyMillis);
+        }
+
+        void succeeded(double handshakeMillis) {
+            coolDownUntil = 0;
+            recordLatency(handshakeMillis);
+        }
+
+        void failed(long coolDownMillis) {
+            coolDownUntil = System.currentTimeMillis() + coolDownMillis;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package hu.gds.jdbc;
+
+import hu.gds.jdbc.resultset.Row;
+
+import java.sql.ResultSet;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking extension of the GDS prepared statements, see {@link GdsAsyncStatement}.
+ * <p>
+ * The parameters are bound when the method is called, so the statement can be reused for the next
+ * request before the previous one completes.
+ */
+public interface GdsAsyncPreparedStatement extends GdsAsyncStatement {
+
+    /**
+     * Asynchronous version of {@link java.sql.PreparedStatement#executeQuery()}.
+     */
+    CompletableFuture<ResultSet> executeQueryAsync();
+
+    /**
+     * Streams the rows of the query with the current parameters, see {@link GdsAsyncStatement#executeQueryPublisher(String)}.
+     */
+    GdsFlow.Publisher<Row> executeQueryPublisher();
+
+    /**
+     * Asynchronous version of {@link java.sql.PreparedStatement#executeUpdate()}.
+     */
+    CompletableFuture<Integer> executeUpdateAsync();
+}
@@ -0,0 +1,43 @@
+package hu.gds.jdbc;
+
+import hu.gds.jdbc.resultset.Row;
+
+import java.sql.ResultSet;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking extension of the GDS statements.
+ * <p>
+ * The statements created by the driver can be unwrapped to this interface:
+ * <pre>
+ * GdsAsyncStatement async = statement.unwrap(GdsAsyncStatement.class);
+ * CompletableFuture&lt;ResultSet&gt; result = async.executeQueryAsync("SELECT * FROM multi_event");
+ * </pre>
+ * The methods send the request and return immediately, the futures are completed when the reply arrives
+ * from the GDS. The results are not registered as the current result of the statement, so any number of
+ * requests can be in flight on the same statement.
+ */
+public interface GdsAsyncStatement {
+
+    /**
+     * Asynchronous version of {@link java.sql.Statement#executeQuery(String)}.
+     */
+    CompletableFuture<ResultSet> executeQueryAsync(String sql);
+
+    /**
+     * Streams the rows of the query. The query is sent when the subscriber requests the first row,
+     * and the next page is requested only when the demand of the subscriber exceeds the rows already received.
+     */
+    GdsFlow.Publisher<Row> executeQueryPublisher(String sql);
+
+    /**
+     * Asynchronous version of {@link java.sql.Statement#executeUpdate(String)}.
+     */
+    CompletableFuture<Integer> executeUpdateAsync(String sql);
+
+    /**
+     * Asynchronous version of {@link java.sql.Statement#executeBatch()}.
+     * The batch of the statement is taken over (and cleared) when the method is called.
+     */
+    CompletableFuture<int[]> executeBatchAsync();
+}
@@ -1,14 +1,21 @@
 package hu.gds.jdbc;
 
 import hu.arheu.gds.message.data.ConsistencyType;
+import hu.gds.jdbc.annotation.Stability;
 import hu.gds.jdbc.error.ClosedResultSetException;
 import hu.gds.jdbc.error.ExhaustedResultSetException;
 import hu.gds.jdbc.error.InvalidParameterException;
-import hu.gds.jdbc.executor.DMLExecutor;
-import hu.gds.jdbc.executor.DQLExecutor;
+import hu.gds.jdbc.error.TypeMismatchException;
+import hu.gds.jdbc.metainfo.SchemaCache;
 import hu.gds.jdbc.resultset.AbstractGdsResultSet;
 import hu.gds.jdbc.resultset.DMLResultSet;
+import hu.gds.jdbc.resultset.DQLResultSet;
+import hu.gds.jdbc.resultset.QueryRowPublisher;
+import hu.gds.jdbc.resultset.Row;
+import hu.gds.jdbc.util.ExecutionDeadline;
+import hu.gds.jdbc.util.Futures;
 import hu.gds.jdbc.util.GdsConstants;
+import hu.gds.jdbc.util.PrefetchScheduler;
 import hu.gds.jdbc.util.StringEscapeUtils;
 import net.sf.jsqlparser.expression.*;
 import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
@@ -32,9 +39,12 @@ import org.jetbrains.annotations.Nullable;
 import java.nio.charset.StandardCharsets;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 
 @SuppressWarnings("RedundantThrows")
-public abstract class GdsBaseStatement implements Statement {
+public abstract class GdsBaseStatement implements Statement, GdsAsyncStatement {
     protected final boolean isReadOnly;
     protected GdsJdbcConnection connection;
     protected AbstractGdsResultSet dqlOrMultiDmlResultSet;
@@ -43,6 +53,9 @@ public abstract class GdsBaseStatement implements Statement {
     private boolean isClosed = false;
     private int updateCount = -1;
     private int maxRows = 0;
+    private int queryTimeout = 0;
+    //the SQL state of an operation cancelled
+    private static final String CANCELLED_SQL_STATE = "HY008";
     private final static List<String> allAttachmentFields = Arrays.asList(
             GdsConstants.ID_FIELD,
             GdsConstants.META_FIELD,
@@ -51,8 +64,18 @@ public abstract class GdsBaseStatement implements Statement {
             GdsConstants.TTL_FIELD,
             GdsConstants.TO_VALID_FIELD);
 
-    /* Vector for batch commands */
-    private Vector<String> batch = null;
+    /*
+        The result sets of the asynchronous executions, closed together with the statement.
+     */
+    private final Set<AbstractGdsResultSet> openResultSets = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /*
+        The deadlines of the executions which may still send requests, cancel() aborts them.
+     */
+    private final Set<ExecutionDeadline> deadlines = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+    /* The analyzed statements of the batch */
+    private List<AnalyzedStatement> batch = null;
 
     GdsBaseStatement(@NotNull GdsJdbcConnection connection) {
         this.connection = connection;
@@ -61,15 +84,37 @@ public abstract class GdsBaseStatement implements Statement {
 
     @Override
     public void addBatch(String sql) throws SQLException {
+        checkClosed(false);
+        try {
+            addBatch(analyze(sql.trim(), true));
+        } catch (SQLException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new SQLException(t);
+        }
+    }
+
+    synchronized void addBatch(AnalyzedStatement analyzed) {
         if (batch == null)
-            batch = new Vector<>();
-        batch.addElement(sql.trim());
+            batch = new ArrayList<>();
+        batch.add(analyzed);
     }
 
     @Override
-    public void clearBatch() throws SQLException {
+    public synchronized void clearBatch() throws SQLException {
         if (batch != null)
-            batch.removeAllElements();
+            batch.clear();
+    }
+
+    /*
+        The batch is taken over by the execution, the statement can collect the next one meanwhile.
+     */
+    private synchronized List<AnalyzedStatement> takeBatch() {
+        if (batch == null || batch.isEmpty())
+            return Collections.emptyList();
+        List<AnalyzedStatement> entries = batch;
+        batch = null;
+        return entries;
     }
 
     @Override
@@ -86,6 +131,17 @@ public abstract class GdsBaseStatement implements Statement {
         if (null != currentResultSet) {
             currentResultSet.close();
         }
+        for (AbstractGdsResultSet resultSet : openResultSets) {
+            resultSet.close();
+        }
+        openResultSets.clear();
+        //the executions still in progress (the streamed queries) fail with the close, the finished ones are not affected
+        SQLException closed = new ClosedResultSetException("The statement was closed");
+        for (ExecutionDeadline deadline : deadlines) {
+            deadline.abort(closed);
+            deadline.finish();
+        }
+        deadlines.clear();
         currentResultSet = null;
         dqlOrMultiDmlResultSet = null;
         connection = null;
@@ -107,251 +163,494 @@ public abstract class GdsBaseStatement implements Statement {
 
     protected boolean executeInner(String sql, boolean singleDmlOrDdlStatement, ConsistencyType consistencyType) throws SQLException {
         checkClosed(false);
+        return completeExecution(executeInnerAsync(sql, singleDmlOrDdlStatement, consistencyType));
+    }
+
+    boolean executeInner(AnalyzedStatement analyzed, ConsistencyType consistencyType) throws SQLException {
+        checkClosed(false);
+        return completeExecution(executeInnerAsync(analyzed, consistencyType));
+    }
+
+    private boolean completeExecution(CompletableFuture<AbstractGdsResultSet> execution) throws SQLException {
+        try {
+            AbstractGdsResultSet resultSet = Futures.await(execution);
+            long mutationCount = setNewResultSet(resultSet);
+
+            if (resultSet.isDml()) {
+                return !resultSet.asDmlResultSet().getCurrentDMLResultSetWrapper().isNull();
+            } else {
+                return mutationCount == -1;
+            }
+        } catch (Throwable t) {
+            //ha nincs hiba, akkor a régi resultset cserélődik, ha hiba történt, akkor viszont az előzőt bekell zárni --> h2 így működik
+            if (currentResultSet != null) {
+                currentResultSet.close();
+            }
+            if (dqlOrMultiDmlResultSet != null) {
+                dqlOrMultiDmlResultSet.close();
+            }
+            if (t instanceof SQLException) {
+                //the query timeout (SQLTimeoutException) and the cancel are reported as they are
+                throw (SQLException) t;
+            }
+            throw new SQLException(t);
+        }
+    }
+
+    /**
+     * Parses the statement and sends it to the GDS without waiting for the reply.
+     * The returned result set is not registered as the current result of this statement.
+     */
+    protected CompletableFuture<AbstractGdsResultSet> executeInnerAsync(String sql, boolean singleDmlOrDdlStatement, ConsistencyType consistencyType) {
+        try {
+            checkClosed(false);
+        } catch (Throwable t) {
+            return Futures.failed(t);
+        }
+        return analyzeAsync(primaryKeys -> analyze(sql, singleDmlOrDdlStatement, primaryKeys))
+                .thenCompose(analyzed -> executeInnerAsync(analyzed, consistencyType));
+    }
+
+    CompletableFuture<AbstractGdsResultSet> executeInnerAsync(AnalyzedStatement analyzed, ConsistencyType consistencyType) {
+        try {
+            checkClosed(false);
+            return executeAnalyzedAsync(analyzed, consistencyType)
+                    .thenApply(this::trackResultSet);
+        } catch (Throwable t) {
+            return Futures.failed(t);
+        }
+    }
+
+    private AbstractGdsResultSet trackResultSet(AbstractGdsResultSet resultSet) {
+        if (resultSet.isDql()) {
+            openResultSets.add(resultSet);
+            boolean statementClosed;
+            synchronized (this) {
+                statementClosed = isClosed;
+            }
+            if (statementClosed) {
+                resultSet.close();
+            }
+        }
+        return resultSet;
+    }
+
+    /**
+     * Called by the result sets of this statement when they are closed.
+     */
+    @Stability.Internal
+    public void resultSetClosed(AbstractGdsResultSet resultSet) {
+        openResultSets.remove(resultSet);
+    }
+
+    /**
+     * Parses the query and returns a publisher streaming its rows, the query is sent on the first demand.
+     */
+    protected GdsFlow.Publisher<Row> executeQueryPublisherInner(String sql, ConsistencyType consistencyType) {
+        try {
+            checkClosed(false);
+            return executeQueryPublisherInner(analyze(sql, false), consistencyType);
+        } catch (Throwable t) {
+            return QueryRowPublisher.error(t);
+        }
+    }
+
+    GdsFlow.Publisher<Row> executeQueryPublisherInner(AnalyzedStatement analyzed, ConsistencyType consistencyType) {
         try {
-            Statements statements = CCJSqlParserUtil.parseStatements(sql);
-            if (singleDmlOrDdlStatement && statements.getStatements().size() > 1) {
-                throw new SQLException("Only one statement allowed by this execute there is " + statements.getStatements().size() + " found in the request");
+            checkClosed(false);
+            if (!analyzed.dqlFound) {
+                throw new SQLException("The statement is not a query: " + analyzed.sql);
             }
-            boolean dqlFound = false;
-            boolean dmlFound = false;
-            boolean onlyAttachmentDML = true;
-            boolean attachmentDQL = false;
-            StringBuilder builtSql = new StringBuilder();
-            int statementsCounter = statements.getStatements().size();
-            Map<String, byte[]> attachments = null;
-            final Boolean[] allColumnsSelected = new Boolean[]{false};
-            List<String> attachmentSelectFields = new ArrayList<>();
-            String selectTableName = null;
-            for (int i = 0; i < statementsCounter; i++) {
-                net.sf.jsqlparser.statement.Statement statement = statements.getStatements().get(i);
-                String table;
-                if (statement instanceof Insert) {
-                    if (dqlFound) {
-                        throw new SQLException("In sql statement not allowed to use SELECT and DML (INSERT, UPDATE, MERGE) statements.");
+            if (analyzed.attachmentDQL) {
+                throw new SQLFeatureNotSupportedException("Attachment queries can not be streamed");
+            }
+            return new QueryRowPublisher(analyzed.sql, analyzed.selectTableName, this, consistencyType, startDeadline());
+        } catch (Throwable t) {
+            return QueryRowPublisher.error(t);
+        }
+    }
+
+    CompletableFuture<AbstractGdsResultSet> executeAnalyzedAsync(AnalyzedStatement analyzed, ConsistencyType consistencyType) throws SQLException {
+        CompletableFuture<? extends AbstractGdsResultSet> resultSet;
+        if (!analyzed.dqlFound && !analyzed.dmlFound) {
+            throw new SQLException("The statement is neither a dql nor a dml!");
+        }
+        ExecutionDeadline deadline = startDeadline();
+        if (analyzed.dqlFound) {
+            resultSet = DQLResultSet.executeAsync(analyzed.attachmentDQL,
+                    analyzed.sql,
+                    analyzed.selectTableName,
+                    analyzed.selectedFields,
+                    this,
+                    consistencyType,
+                    deadline);
+        } else {
+            resultSet = DMLResultSet.executeAsync(null == analyzed.attachments ? new HashMap<>() : analyzed.attachments,
+                    analyzed.onlyAttachmentDML, analyzed.sql, this, deadline);
+        }
+        return resultSet.<AbstractGdsResultSet>thenApply(executed -> executed)
+                .whenComplete((executed, cause) -> {
+                    //a query result set keeps the deadline for its next pages until it is closed
+                    if (null != cause || !executed.isDql()) {
+                        deadline.finish();
                     }
-                    Insert insert = (Insert) statement;
-                    table = insert.getTable().getName();
-                    if (null != table && table.endsWith(GdsConstants.ATTACHMENT_TABLE_SUFFIX)) {
-                        if (null == attachments) {
-                            attachments = new HashMap<>();
-                        }
-                        replaceAttachmentHexBinary(insert, attachments);
-                    } else {
-                        onlyAttachmentDML = false;
+                });
+    }
+
+    /*
+        Starts the deadline of a new execution by the query timeout of the statement.
+     */
+    private ExecutionDeadline startDeadline() {
+        deadlines.removeIf(ExecutionDeadline::isFinished);
+        ExecutionDeadline deadline = ExecutionDeadline.start(queryTimeout);
+        deadlines.add(deadline);
+        return deadline;
+    }
+
+    /**
+     * Returns the analysis of the statement from the statement cache of the connection, or analyzes it
+     * and caches the result.
+     */
+    AnalyzedStatement analyze(String sql, boolean singleDmlOrDdlStatement) throws Throwable {
+        return analyze(sql, singleDmlOrDdlStatement, connection.getSchemaCache()::getPrimaryKeys);
+    }
+
+    /**
+     * Same as {@link #analyze(String, boolean)} with the given primary keys, null if the lookup missed one.
+     */
+    AnalyzedStatement analyze(String sql, boolean singleDmlOrDdlStatement, AnalyzedStatement.PrimaryKeyLookup primaryKeys) throws Throwable {
+        StatementCache cache = connection.getStatementCache();
+        String key = StatementCache.key(sql, maxRows);
+        AnalyzedStatement analyzed = cache.get(key);
+        if (null != analyzed && !analyzed.hasCurrentPrimaryKeys(primaryKeys)) {
+            //the WHERE of the UPDATE was rewritten with primary keys changed (or reloaded as expired) since
+            cache.remove(key);
+            analyzed = null;
+        }
+        if (null == analyzed) {
+            analyzed = parseAndRewrite(sql, primaryKeys);
+            if (null == analyzed) {
+                return null;
+            }
+            /*
+                The attachments are decoded from the statement, they are not kept in the cache.
+             */
+            if (null == analyzed.attachments) {
+                cache.put(key, analyzed);
+            }
+        }
+        if (singleDmlOrDdlStatement && analyzed.statementCount > 1) {
+            throw new SQLException("Only one statement allowed by this execute there is " + analyzed.statementCount + " found in the request");
+        }
+        if (singleDmlOrDdlStatement && analyzed.dqlFound) {
+            throw new SQLException("Select statement found! Not a dml or ddl single statement!");
+        }
+        return analyzed;
+    }
+
+    /**
+     * The analysis of a statement for an asynchronous execution.
+     */
+    interface Analysis<T> {
+        /**
+         * @return the analysis done with the given primary keys, null if the lookup missed one
+         */
+        T analyze(AnalyzedStatement.PrimaryKeyLookup primaryKeys) throws Throwable;
+    }
+
+    /*
+        The primary keys of the table of an UPDATE are loaded by a query, an asynchronous execution must not
+        wait for it on the calling thread. The analysis runs with the cached primary keys, if it misses some,
+        they are loaded without waiting, and the analysis is repeated with them on the prefetch executor.
+     */
+    <T> CompletableFuture<T> analyzeAsync(Analysis<T> analysis) {
+        return analyzeAsync(analysis, new ConcurrentHashMap<>());
+    }
+
+    private <T> CompletableFuture<T> analyzeAsync(Analysis<T> analysis, Map<String, List<String>> loaded) {
+        SchemaCache schemaCache = connection.getSchemaCache();
+        Set<String> missing = new HashSet<>();
+        T analyzed;
+        try {
+            analyzed = analysis.analyze(tableName -> {
+                //the loaded keys are used even if the schema cache does not keep them (schema.cache.ttl=0)
+                List<String> keys = loaded.get(tableName);
+                if (null == keys) {
+                    keys = schemaCache.getCachedPrimaryKeys(tableName);
+                }
+                if (null == keys) {
+                    missing.add(tableName);
+                }
+                return keys;
+            });
+        } catch (Throwable t) {
+            return Futures.failed(t);
+        }
+        if (missing.isEmpty()) {
+            return CompletableFuture.completedFuture(analyzed);
+        }
+        List<CompletableFuture<?>> loads = new ArrayList<>();
+        for (String tableName : missing) {
+            loads.add(schemaCache.getPrimaryKeysAsync(tableName)
+                    .thenAccept(keys -> loaded.put(tableName, keys)));
+        }
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0]))
+                .thenComposeAsync(ignored -> analyzeAsync(analysis, loaded), PrefetchScheduler.executor());
+    }
+
+    /**
+     * Parses the statement and applies the GDS specific rewrites on it (read-only column removal,
+     * TTL null replacement, LIMIT for maxRows, etc.). The UPDATE statements are rewritten with the primary keys
+     * of the lookup.
+     *
+     * @return the analysis, null if the lookup missed a primary key
+     */
+    AnalyzedStatement parseAndRewrite(String sql, AnalyzedStatement.PrimaryKeyLookup primaryKeys) throws Throwable {
+        Statements statements = CCJSqlParserUtil.parseStatements(sql);
+        boolean dqlFound = false;
+        boolean dmlFound = false;
+        boolean onlyAttachmentDML = true;
+        boolean attachmentDQL = false;
+        StringBuilder builtSql = new StringBuilder();
+        int statementsCounter = statements.getStatements().size();
+        Map<String, byte[]> attachments = null;
+        final Boolean[] allColumnsSelected = new Boolean[]{false};
+        List<String> attachmentSelectFields = new ArrayList<>();
+        String selectTableName = null;
+        Set<Integer> ttlParameters = new HashSet<>();
+        Map<String, List<String>> updatePrimaryKeys = new HashMap<>();
+        for (int i = 0; i < statementsCounter; i++) {
+            net.sf.jsqlparser.statement.Statement statement = statements.getStatements().get(i);
+            String table;
+            if (statement instanceof Insert) {
+                if (dqlFound) {
+                    throw new SQLException("In sql statement not allowed to use SELECT and DML (INSERT, UPDATE, MERGE) statements.");
+                }
+                Insert insert = (Insert) statement;
+                table = insert.getTable().getName();
+                if (null != table && table.endsWith(GdsConstants.ATTACHMENT_TABLE_SUFFIX)) {
+                    if (null == attachments) {
+                        attachments = new HashMap<>();
                     }
-                    List<Column> columns = insert.getColumns();
-                    List<Integer> shouldRemove = new ArrayList<>();
-                    Integer[] ttl_field_index = new Integer[1];
-                    Boolean[] ttl_field_null = new Boolean[1];
-                    ttl_field_null[0] = false;
-                    for (int j = columns.size() - 1; j >= 0; j--) {
-                        if (GdsConstants.isReadOnlyField(StringEscapeUtils.unescapeAtSymbol(columns.get(j).getColumnName()))) {
-                            shouldRemove.add(j);
-                            columns.remove(j);
-                        } else if (GdsConstants.TTL_FIELD.equals(StringEscapeUtils.unescapeAtSymbol(columns.get(j).getColumnName()))) {
-                            ttl_field_index[0] = j;
-                        }
+                    replaceAttachmentHexBinary(insert, attachments);
+                } else {
+                    onlyAttachmentDML = false;
+                }
+                List<Column> columns = insert.getColumns();
+                List<Integer> shouldRemove = new ArrayList<>();
+                Integer[] ttl_field_index = new Integer[1];
+                Boolean[] ttl_field_null = new Boolean[1];
+                ttl_field_null[0] = false;
+                for (int j = columns.size() - 1; j >= 0; j--) {
+                    if (GdsConstants.isReadOnlyField(StringEscapeUtils.unescapeAtSymbol(columns.get(j).getColumnName()))) {
+                        shouldRemove.add(j);
+                        columns.remove(j);
+                    } else if (GdsConstants.TTL_FIELD.equals(StringEscapeUtils.unescapeAtSymbol(columns.get(j).getColumnName()))) {
+                        ttl_field_index[0] = j;
                     }
-                    insert.getItemsList().accept(new InsertDeParser() {
-                        @Override
-                        public void visit(ExpressionList expressionList) {
-                            List<Expression> expressions = expressionList.getExpressions();
-                            if (ttl_field_index[0] != null) {
-                                expressions.get(ttl_field_index[0]).accept(new ExpressionDeParser() {
-                                    @Override
-                                    public void visit(NullValue nullValue) {
-                                        ttl_field_null[0] = true;
-                                    }
-                                });
-                                if (ttl_field_null[0]) {
-                                    expressions.set(ttl_field_index[0], new LongValue(Long.MAX_VALUE));
-                                }
+                }
+                insert.getItemsList().accept(new InsertDeParser() {
+                    @Override
+                    public void visit(ExpressionList expressionList) {
+                        List<Expression> expressions = expressionList.getExpressions();
+                        if (ttl_field_index[0] != null) {
+                            Expression ttlExpression = expressions.get(ttl_field_index[0]);
+                            if (ttlExpression instanceof JdbcParameter
+                                    && null != ((JdbcParameter) ttlExpression).getIndex()) {
+                                ttlParameters.add(((JdbcParameter) ttlExpression).getIndex());
                             }
-                            for (int i : shouldRemove) {
-                                expressions.remove(i);
+                            ttlExpression.accept(new ExpressionDeParser() {
+                                @Override
+                                public void visit(NullValue nullValue) {
+                                    ttl_field_null[0] = true;
+                                }
+                            });
+                            if (ttl_field_null[0]) {
+                                expressions.set(ttl_field_index[0], new LongValue(Long.MAX_VALUE));
                             }
-
                         }
-                    });
-                    dmlFound = true;
-                } else if (statement instanceof Update) {
-                    if (dqlFound) {
-                        throw new SQLException("In sql statement not allowed to use SELECT and DML (INSERT, UPDATE, MERGE) statements.");
-                    }
-                    onlyAttachmentDML = false;
-                    dmlFound = true;
-                    Update update = (Update) statement;
-                    Table updateTable = update.getTable();
-                    updateTable.setAlias(null);
-                    List<Column> columns = update.getColumns();
-                    for (Column c : columns) {
-                        c.setTable(null);
-                        if (GdsConstants.isReadOnlyField(StringEscapeUtils.unescapeAtSymbol(c.getName(false)))) {
-                            throw new SQLException("The field " + c.getName(false) + " is not updatable!");
+                        for (int i : shouldRemove) {
+                            expressions.remove(i);
                         }
+
                     }
-                    ResultSet rs = connection.getMetaData().getPrimaryKeys(null, null, updateTable.getName());
-                    ArrayList<String> keys = new ArrayList<>();
-                    while (rs.next()) {
-                        keys.add(rs.getString("COLUMN_NAME"));
+                });
+                dmlFound = true;
+            } else if (statement instanceof Update) {
+                if (dqlFound) {
+                    throw new SQLException("In sql statement not allowed to use SELECT and DML (INSERT, UPDATE, MERGE) statements.");
+                }
+                onlyAttachmentDML = false;
+                dmlFound = true;
+                Update update = (Update) statement;
+                Table updateTable = update.getTable();
+                updateTable.setAlias(null);
+                List<Column> columns = update.getColumns();
+                for (Column c : columns) {
+                    c.setTable(null);
+                    if (GdsConstants.isReadOnlyField(StringEscapeUtils.unescapeAtSymbol(c.getName(false)))) {
+                        throw new SQLException("The field " + c.getName(false) + " is not updatable!");
                     }
-                    EqualsTo[] keyExpression = new EqualsTo[1];
-                    Boolean[] idLikeExpressionFound = new Boolean[1];
-                    idLikeExpressionFound[0] = false;
-                    update.getWhere().accept(new ExpressionDeParser() {
-                        @Override
-                        public void visit(LikeExpression likeExpression) {
-                            if (likeExpression.getLeftExpression() instanceof Column) {
-                                if (keys.contains(((Column) likeExpression.getLeftExpression()).getColumnName())) {
-                                    keyExpression[0] = new EqualsTo();
-                                    likeExpression.getLeftExpression().accept(new ExpressionDeParser() {
-                                        @Override
-                                        public void visit(Column tableColumn) {
-                                            tableColumn.setTable(null);
-                                        }
-                                    });
-                                    keyExpression[0].setLeftExpression(likeExpression.getLeftExpression());
-                                    keyExpression[0].setRightExpression(likeExpression.getRightExpression());
-                                    idLikeExpressionFound[0] = true;
-                                }
+                }
+                List<String> keys = primaryKeys.get(updateTable.getName());
+                if (null == keys) {
+                    return null;
+                }
+                updatePrimaryKeys.put(updateTable.getName(), keys);
+                EqualsTo[] keyExpression = new EqualsTo[1];
+                Boolean[] idLikeExpressionFound = new Boolean[1];
+                idLikeExpressionFound[0] = false;
+                update.getWhere().accept(new ExpressionDeParser() {
+                    @Override
+                    public void visit(LikeExpression likeExpression) {
+                        if (likeExpression.getLeftExpression() instanceof Column) {
+                            if (keys.contains(((Column) likeExpression.getLeftExpression()).getColumnName())) {
+                                keyExpression[0] = new EqualsTo();
+                                likeExpression.getLeftExpression().accept(new ExpressionDeParser() {
+                                    @Override
+                                    public void visit(Column tableColumn) {
+                                        tableColumn.setTable(null);
+                                    }
+                                });
+                                keyExpression[0].setLeftExpression(likeExpression.getLeftExpression());
+                                keyExpression[0].setRightExpression(likeExpression.getRightExpression());
+                                idLikeExpressionFound[0] = true;
                             }
                         }
-                    });
-                    if (idLikeExpressionFound[0]) {
-                        update.setWhere(keyExpression[0]);
-                    }
-                } else if (statement instanceof Merge) {
-                    if (dqlFound) {
-                        throw new SQLException("In sql statement not allowed to use SELECT and DML (INSERT, UPDATE, MERGE) statements.");
-                    }
-                    onlyAttachmentDML = false;
-                    dmlFound = true;
-                } else if (statement instanceof Select) {
-                    if (singleDmlOrDdlStatement) {
-                        throw new SQLException("Select statement found! Not a dml or ddl single statement!");
                     }
-                    if (dqlFound) {
-                        throw new SQLException("In sql statement multiple SELECT not allowed");
-                    }
-                    dqlFound = true;
-                    if (dmlFound) {
-                        throw new SQLException("In sql statement not allowed to use SELECT and DML (INSERT, UPDATE, MERGE) statements.");
-                    }
-                    onlyAttachmentDML = false;
-                    Select select = (Select) statement;
-                    final String[] tempTable = new String[1];
-                    select.getSelectBody().accept(new SelectDeParser() {
-
-                        @Override
-                        public void visit(PlainSelect plainSelect) {
-                            plainSelect.accept(new SelectDeParser() {
-                                @Override
-                                public void visit(Table tableName) {
-                                    tempTable[0] = tableName.getName();
-                                    tableName.setAlias(null);
-                                }
+                });
+                if (idLikeExpressionFound[0]) {
+                    update.setWhere(keyExpression[0]);
+                }
+            } else if (statement instanceof Merge) {
+                if (dqlFound) {
+                    throw new SQLException("In sql statement not allowed to use SELECT and DML (INSERT, UPDATE, MERGE) statements.");
+                }
+                onlyAttachmentDML = false;
+                dmlFound = true;
+            } else if (statement instanceof Select) {
+                if (dqlFound) {
+                    throw new SQLException("In sql statement multiple SELECT not allowed");
+                }
+                dqlFound = true;
+                if (dmlFound) {
+                    throw new SQLException("In sql statement not allowed to use SELECT and DML (INSERT, UPDATE, MERGE) statements.");
+                }
+                onlyAttachmentDML = false;
+                Select select = (Select) statement;
+                final String[] tempTable = new String[1];
+                select.getSelectBody().accept(new SelectDeParser() {
+
+                    @Override
+                    public void visit(PlainSelect plainSelect) {
+                        plainSelect.accept(new SelectDeParser() {
+                            @Override
+                            public void visit(Table tableName) {
+                                tempTable[0] = tableName.getName();
+                                tableName.setAlias(null);
+                            }
 
-                                @Override
-                                public void visit(AllColumns allColumns) {
-                                    allColumnsSelected[0] = true;
-                                }
+                            @Override
+                            public void visit(AllColumns allColumns) {
+                                allColumnsSelected[0] = true;
+                            }
 
-                                @Override
-                                public void visit(AllTableColumns allTableColumns) {
-                                    int index = plainSelect.getSelectItems().indexOf(allTableColumns);
-                                    plainSelect.getSelectItems().remove(index);
-                                    plainSelect.getSelectItems().add(index, new AllColumns());
-                                    allColumnsSelected[0] = true;
-                                }
+                            @Override
+                            public void visit(AllTableColumns allTableColumns) {
+                                int index = plainSelect.getSelectItems().indexOf(allTableColumns);
+                                plainSelect.getSelectItems().remove(index);
+                                plainSelect.getSelectItems().add(index, new AllColumns());
+                                allColumnsSelected[0] = true;
+                            }
 
-                                @Override
-                                public void visit(SelectExpressionItem selectExpressionItem) {
-                                    selectExpressionItem.getExpression().accept(new ExpressionDeParser() {
-                                        @Override
-                                        public void visit(Column tableColumn) {
-                                            attachmentSelectFields.add(tableColumn.getColumnName());
-                                            tableColumn.setTable(null);
-                                        }
-                                    });
-                                }
-                            });
-                            if (maxRows > 0) {
-                                Expression e;
-                                final long[] originalLimit = new long[1];
-                                Limit l = new Limit();
-                                if (plainSelect.getLimit() != null) {
-                                    e = plainSelect.getLimit().getRowCount();
-                                    ExpressionDeParser parser = new ExpressionDeParser() {
-                                        @Override
-                                        public void visit(LongValue longValue) {
-                                            originalLimit[0] = longValue.getValue();
-                                        }
-                                    };
-                                    e.accept(parser);
-                                    if (maxRows < originalLimit[0]) {
-                                        l.setRowCount(new LongValue(maxRows));
-                                    } else {
-                                        l.setRowCount(new LongValue(originalLimit[0]));
+                            @Override
+                            public void visit(SelectExpressionItem selectExpressionItem) {
+                                selectExpressionItem.getExpression().accept(new ExpressionDeParser() {
+                                    @Override
+                                    public void visit(Column tableColumn) {
+                                        attachmentSelectFields.add(tableColumn.getColumnName());
+                                        tableColumn.setTable(null);
                                     }
-                                } else {
+                                });
+                            }
+                        });
+                        if (maxRows > 0) {
+                            Expression e;
+                            final long[] originalLimit = new long[1];
+                            Limit l = new Limit();
+                            if (plainSelect.getLimit() != null) {
+                                e = plainSelect.getLimit().getRowCount();
+                                ExpressionDeParser parser = new ExpressionDeParser() {
+                                    @Override
+                                    public void visit(LongValue longValue) {
+                                        originalLimit[0] = longValue.getValue();
+                                    }
+                                };
+                                e.accept(parser);
+                                if (maxRows < originalLimit[0]) {
                                     l.setRowCount(new LongValue(maxRows));
+                                } else {
+                                    l.setRowCount(new LongValue(originalLimit[0]));
                                 }
-                                plainSelect.setLimit(l);
+                            } else {
+                                l.setRowCount(new LongValue(maxRows));
                             }
+                            plainSelect.setLimit(l);
                         }
-                    });
-                    table = tempTable[0];
-                    if (null != table && table.endsWith(GdsConstants.ATTACHMENT_TABLE_SUFFIX)) {
-                        attachmentDQL = true;
                     }
-                    selectTableName = table;
-                } else {
-                    throw new SQLException("Unsupported statement found: " + statement + ". Only INSERT, UPDATE, MERGE, SELECT are allowed");
-                }
-                builtSql.append(statement).append(";");
-                if (i < statementsCounter - 1) {
-                    builtSql.append("\n");
+                });
+                table = tempTable[0];
+                if (null != table && table.endsWith(GdsConstants.ATTACHMENT_TABLE_SUFFIX)) {
+                    attachmentDQL = true;
                 }
-            }
-
-            AbstractGdsResultSet resultSet;
-            long mutationCount;
-            if (dqlFound) {
-                DQLExecutor executor = new DQLExecutor(attachmentDQL,
-                        connection,
-                        builtSql.toString(),
-                        selectTableName,
-                        allColumnsSelected[0]
-                                ? allAttachmentFields
-                                : attachmentSelectFields,
-                        this,
-                        consistencyType);
-                resultSet = executor.getResult();
-            } else if (dmlFound) {
-                DMLExecutor executor = new DMLExecutor(null == attachments ? new HashMap<>() : attachments,
-                        onlyAttachmentDML, connection, builtSql.toString(), this);
-                resultSet = executor.getResult();
-            } else {
-                throw new SQLException("The statement is neither a dql nor a dml!");
-            }
-
-            mutationCount = setNewResultSet(resultSet);
-
-            if (resultSet.isDml()) {
-                return !resultSet.asDmlResultSet().getCurrentDMLResultSetWrapper().isNull();
+                selectTableName = table;
             } else {
-                return mutationCount == -1;
+                throw new SQLException("Unsupported statement found: " + statement + ". Only INSERT, UPDATE, MERGE, SELECT are allowed");
             }
-        } catch (Throwable t) {
-            //ha nincs hiba, akkor a régi resultset cserélődik, ha hiba történt, akkor viszont az előzőt bekell zárni --> h2 így működik
-            if (currentResultSet != null) {
-                currentResultSet.close();
+            builtSql.append(statement).append(";");
+            if (i < statementsCounter - 1) {
+                builtSql.append("\n");
             }
-            if (dqlOrMultiDmlResultSet != null) {
-                dqlOrMultiDmlResultSet.close();
+        }
+
+        return new AnalyzedStatement(builtSql.toString(),
+                statementsCounter,
+                dqlFound,
+                dmlFound,
+                onlyAttachmentDML,
+                attachmentDQL,
+                selectTableName,
+                allColumnsSelected[0]
+                        ? allAttachmentFields
+                        : attachmentSelectFields,
+                attachments,
+                ttlParameters,
+                updatePrimaryKeys);
+    }
+
+    /**
+     * @return the result set the way {@code executeQuery} returns it.
+     */
+    static ResultSet toQueryResult(AbstractGdsResultSet resultSet) throws SQLException {
+        if (resultSet.isDml()) {
+            DMLResultSet dmlResultSet = resultSet.asDmlResultSet();
+            if (dmlResultSet.getCurrentDMLResultSetWrapper().isNull()) {
+                throw new SQLException("No result set");
             }
-            throw new SQLException(t);
+            return dmlResultSet.getCurrentDMLResultSet();
         }
+        return resultSet;
+    }
+
+    /**
+     * @return the update count the way {@code executeUpdate} returns it.
+     */
+    static int toUpdateCount(AbstractGdsResultSet resultSet) throws SQLException {
+        if (resultSet.isDml() && resultSet.asDmlResultSet().getCurrentDMLResultSetWrapper().isNull()) {
+            long mutationCount = resultSet.asDmlResultSet().getCurrentDMLResultSet().getMutationCount();
+            return (int) Math.max(0, Math.min(Integer.MAX_VALUE, mutationCount));
+        }
+        return 0;
     }
 
     private void replaceAttachmentHexBinary(Insert insert, Map<String, byte[]> attachments) throws SQLException {
@@ -487,38 +786,59 @@ public abstract class GdsBaseStatement implements Statement {
 
     @Override
     public int[] executeBatch() throws SQLException {
-        if (batch == null || batch.isEmpty())
-            return new int[0];
-
-        int size = batch.size();
-        int[] result = new int[size];
-        int i = 0;
-
         try {
-            for (i = 0; i < size; i++)
-                result[i] = this.executeUpdate(batch.elementAt(i));
-            return result;
+            return Futures.await(executeBatchAsync());
         } catch (SQLException e) {
-            String message = "Batch failed for request " + i + ": "
-                    + batch.elementAt(i) + " (" + e + ")";
+            throw e;
+        } catch (Throwable t) {
+            throw new SQLException(t);
+        }
+    }
 
-            int[] updateCounts = new int[i];
-            System.arraycopy(result, 0, updateCounts, 0, i);
+    @Override
+    public CompletableFuture<int[]> executeBatchAsync() {
+        try {
+            checkClosed(false);
+        } catch (SQLException e) {
+            return Futures.failed(e);
+        }
+        List<AnalyzedStatement> entries = takeBatch();
+        if (entries.isEmpty())
+            return CompletableFuture.completedFuture(new int[0]);
+        try {
+            int batchSize = (int) longValueFromString(connection.getClientInfo(DriverPropertyInfoHelper.BATCH_SIZE),
+                    DriverPropertyInfoHelper.BATCH_SIZE, BatchExecution.BATCH_SIZE_DEFAULT);
+            int window = (int) longValueFromString(connection.getClientInfo(DriverPropertyInfoHelper.BATCH_WINDOW),
+                    DriverPropertyInfoHelper.BATCH_WINDOW, BatchExecution.BATCH_WINDOW_DEFAULT);
+            return new BatchExecution(this, entries, batchSize).execute(window);
+        } catch (Throwable t) {
+            return Futures.failed(t);
+        }
+    }
 
-            throw new BatchUpdateException(message, updateCounts);
-        } finally {
-            batch.removeAllElements();
+    private static long longValueFromString(String value, String identifier, long defaultValue) {
+        if (value == null || "".equals(value.trim())) {
+            return defaultValue;
+        } else {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException("The value of the '" + identifier + "' parameter is invalid!", nfe);
+            }
         }
     }
 
     @Override
     public <T> T unwrap(final Class<T> iface) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        if (iface.isAssignableFrom(getClass())) {
+            return iface.cast(this);
+        }
+        throw new TypeMismatchException("Cannot unwrap to " + iface.getName());
     }
 
     @Override
     public boolean isWrapperFor(final Class<?> iface) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        return iface.isAssignableFrom(getClass());
     }
 
     @Override
@@ -579,17 +899,35 @@ public abstract class GdsBaseStatement implements Statement {
 
     @Override
     public int getQueryTimeout() throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        checkClosed(false);
+        return queryTimeout;
     }
 
+    /**
+     * Sets the seconds an execution may take, including the fetch of every page of a query.
+     * The executions started afterwards are aborted with an {@link SQLTimeoutException} when it expires.
+     */
     @Override
     public void setQueryTimeout(int seconds) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        checkClosed(false);
+        if (seconds < 0) {
+            throw new SQLException("The query timeout must not be negative: " + seconds);
+        }
+        queryTimeout = seconds;
     }
 
+    /**
+     * Aborts the executions of the statement in progress: the waiting threads are woken up with an exception,
+     * the prefetch stops, and the replies of the requests in flight are dropped.
+     * The GDS has no message to stop an operation, an event already sent is still executed.
+     */
     @Override
     public void cancel() throws SQLException {
-        throw new SQLFeatureNotSupportedException("GDS provides no support for interrupting an operation.");
+        checkClosed(false);
+        SQLException cause = new SQLException("The statement was cancelled", CANCELLED_SQL_STATE);
+        for (ExecutionDeadline deadline : deadlines) {
+            deadline.abort(cause);
+        }
     }
 
     @Override
@@ -1,6 +1,10 @@
 package hu.gds.jdbc;
 
 import hu.gds.jdbc.error.GdsException;
+import hu.gds.jdbc.metainfo.SchemaCache;
+import hu.gds.jdbc.util.ConcurrencyLimiter;
+import hu.gds.jdbc.util.MemoryBudget;
+import hu.gds.jdbc.util.PrefetchScheduler;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -13,11 +17,12 @@ public class GdsClientURI {
     static final String PREFIX = "jdbc:gds:";
 
     private static final Set<String> JDBC_KEYS = new HashSet<>(Arrays.asList(
-            USER, PASSWORD, SERVE_ON_THE_SAME_CONNECTION, ENABLE_SSL, KEYSTORE_PATH, KEYSTORE_PASSWORD, VERIFY_SERVER_CERTIFICATE));
+            USER, PASSWORD, SERVE_ON_THE_SAME_CONNECTION, MULTIPLEX, ENABLE_SSL, KEYSTORE_PATH, KEYSTORE_PASSWORD, VERIFY_SERVER_CERTIFICATE));
 
     //private final String connectionString;
     final String uri;
     final String host;
+    final List<String> hosts;
     final String keyStorePath;
     final String keyStorePassword;
     final String userName;
@@ -26,10 +31,30 @@ public class GdsClientURI {
     final boolean sslEnabled;
     final long timeout;
     final boolean serveOnTheSameConnection;
+    final boolean multiplex;
+    final String gatePolicy;
+    final long gateCoolDown;
+    final boolean reconnect;
+    final int reconnectAttempts;
+    final int concurrencyLimitInitial;
+    final int concurrencyLimitMax;
+    final long concurrencyQueueTimeout;
+    final int networkTimeout;
     final Integer queryType;
     final Integer queryPageSize;
 //    final String consistencyType;
     final int prefetch;
+    /*
+        The settings of the logical connection, validated before the connection is opened.
+     */
+    final int prefetchPoolSize;
+    final boolean prefetchVirtualThreads;
+    final long prefetchMemoryConnection;
+    final long prefetchMemoryDriver;
+    final int statementCacheSize;
+    final long schemaCacheTtl;
+    final int schemaDiscoveryParallelism;
+    final String schemaSnapshotDir;
 
     public GdsClientURI(@NotNull String uri, @Nullable Properties info) {
         this.uri = uri;
@@ -62,9 +87,31 @@ public class GdsClientURI {
         this.keyStorePassword = getOption(info, options, KEYSTORE_PASSWORD, null);
         this.sslEnabled = isTrue(getOption(info, options, ENABLE_SSL, BOOLEAN_CHOICE_FALSE));
         this.serveOnTheSameConnection = isTrue(getOption(info, options, SERVE_ON_THE_SAME_CONNECTION, BOOLEAN_CHOICE_TRUE));
+        this.multiplex = isTrue(getOption(info, options, MULTIPLEX, BOOLEAN_CHOICE_FALSE));
         this.host = serverPart;
+        List<String> hostList = new ArrayList<>();
+        for (String gateHost : serverPart.split(",")) {
+            if (!gateHost.trim().isEmpty()) {
+                hostList.add(gateHost.trim());
+            }
+        }
+        this.hosts = Collections.unmodifiableList(hostList);
+        this.gatePolicy = Objects.requireNonNull(getOption(info, options, GATE_POLICY, GateBalancer.POLICY_FAILOVER)).toLowerCase(Locale.ENGLISH);
+        if (!Arrays.asList(GateBalancer.POLICY_CHOICES).contains(gatePolicy)) {
+            throw new IllegalArgumentException("Gate policy must be one of " + Arrays.toString(GateBalancer.POLICY_CHOICES));
+        }
+        this.reconnect = isTrue(getOption(info, options, RECONNECT, BOOLEAN_CHOICE_FALSE));
+        this.reconnectAttempts = Integer.parseInt(Objects.requireNonNull(getOption(info, options, RECONNECT_ATTEMPTS, Integer.toString(RECONNECT_ATTEMPTS_DEFAULT))));
+        this.concurrencyLimitInitial = Integer.parseInt(Objects.requireNonNull(getOption(info, options, CONCURRENCY_LIMIT_INITIAL, Integer.toString(ConcurrencyLimiter.INITIAL_LIMIT_DEFAULT))));
+        this.concurrencyLimitMax = Integer.parseInt(Objects.requireNonNull(getOption(info, options, CONCURRENCY_LIMIT_MAX, Integer.toString(ConcurrencyLimiter.MAX_LIMIT_DEFAULT))));
+        this.gateCoolDown = Long.parseLong(Objects.requireNonNull(getOption(info, options, GATE_COOL_DOWN, Long.toString(GateBalancer.COOL_DOWN_DEFAULT))));
+        this.networkTimeout = Integer.parseInt(Objects.requireNonNull(getOption(info, options, NETWORK_TIMEOUT, Integer.toString(NETWORK_TIMEOUT_DEFAULT))));
+        if (networkTimeout < 0) {
+            throw new IllegalArgumentException("The network timeout can not be negative");
+        }
         this.gateUrl = nsPart;
         this.timeout = Long.parseLong(Objects.requireNonNull(getOption(info, options, TIMEOUT, Long.toString(10_000L))));
+        this.concurrencyQueueTimeout = Long.parseLong(Objects.requireNonNull(getOption(info, options, CONCURRENCY_QUEUE_TIMEOUT, Long.toString(timeout))));
         String qt = Objects.requireNonNull(getOption(info, options, DQL_QUERY_TYPE, "PAGE")).toUpperCase();
         if (!"PAGE".equals(qt) && !"SCROLL".equals(qt)) {
             throw new IllegalArgumentException("QueryType must be one of " + Arrays.toString(DQL_QUERY_TYPE_CHOICES));
@@ -76,19 +123,53 @@ public class GdsClientURI {
 //            throw new IllegalArgumentException("ConsistencyType must be one of " + Arrays.toString(DQL_CONSISTENCY_TYPE_CHOICES));
 //        }
         this.prefetch = Integer.parseInt(Objects.requireNonNull(getOption(info, options, PREFETCH, "3")));
+        this.prefetchPoolSize = (int) getLongOption(info, options, PREFETCH_POOL_SIZE, PrefetchScheduler.POOL_SIZE_DEFAULT);
+        this.prefetchVirtualThreads = isTrue(getOption(info, options, PREFETCH_VIRTUAL_THREADS, BOOLEAN_CHOICE_FALSE));
+        this.prefetchMemoryConnection = getLongOption(info, options, PREFETCH_MEMORY_CONNECTION, MemoryBudget.CONNECTION_LIMIT_DEFAULT);
+        this.prefetchMemoryDriver = getLongOption(info, options, PREFETCH_MEMORY_DRIVER, MemoryBudget.DRIVER_LIMIT_DEFAULT);
+        this.statementCacheSize = (int) getLongOption(info, options, STATEMENT_CACHE_SIZE, StatementCache.SIZE_DEFAULT);
+        this.schemaCacheTtl = getLongOption(info, options, SCHEMA_CACHE_TTL, SchemaCache.TTL_DEFAULT);
+        this.schemaDiscoveryParallelism = (int) getLongOption(info, options, SCHEMA_DISCOVERY_PARALLELISM, SchemaCache.DISCOVERY_PARALLELISM_DEFAULT);
+        String snapshotDir = getOption(info, options, SCHEMA_SNAPSHOT_DIR, null);
+        this.schemaSnapshotDir = null == snapshotDir || snapshotDir.trim().isEmpty() ? null : snapshotDir.trim();
     }
 
     GdsConnection createGdsConnection() throws SQLException {
         GdsConnection gdsConnection;
         try {
-            gdsConnection = new GdsConnection(this);
-            gdsConnection.initConnection();
+            if (multiplex) {
+                return GdsConnection.acquireShared(this);
+            }
+            gdsConnection = connectToGate(null);
         } catch (Throwable ex) {
             throw new GdsException(ex);
         }
         return gdsConnection;
     }
 
+    /*
+        The gates are tried in the order of the policy, a gate refusing the login is cooled down
+        and the next one is tried.
+     */
+    GdsConnection connectToGate(String sharedKey) throws Throwable {
+        Throwable failure = new GdsException("No host given in the url: " + uri);
+        for (GateBalancer.Gate gate : GateBalancer.of(hosts).order(gatePolicy)) {
+            long start = System.nanoTime();
+            GdsConnection gdsConnection;
+            try {
+                gdsConnection = new GdsConnection(this, gate, sharedKey);
+                gdsConnection.initConnection();
+            } catch (Throwable ex) {
+                gate.failed(gateCoolDown);
+                failure = ex;
+                continue;
+            }
+            gate.succeeded((System.nanoTime() - start) / 1_000_000.0);
+            return gdsConnection;
+        }
+        throw failure;
+    }
+
     @Nullable
     private String getLastValue(@Nullable Map<String, List<String>> optionsMap, @NotNull String key) {
         if (optionsMap == null) return null;
@@ -114,6 +195,19 @@ public class GdsClientURI {
         return value != null ? value : defaultValue;
     }
 
+    private long getLongOption(@Nullable Properties properties, @Nullable Map<String, List<String>> options,
+                               @NotNull String optionName, long defaultValue) {
+        String value = getOption(properties, options, optionName, null);
+        if (null == value || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException nfe) {
+            throw new IllegalArgumentException("The value of the '" + optionName + "' parameter is invalid!", nfe);
+        }
+    }
+
     @NotNull
     private Map<String, List<String>> parseOptions(@NotNull String optionsPart) {
         Map<String, List<String>> optionsMap = new HashMap<>();
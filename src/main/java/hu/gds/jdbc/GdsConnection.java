@@ -8,17 +8,30 @@ import hu.arheu.gds.message.data.*;
 import hu.arheu.gds.message.data.impl.AckStatus;
 import hu.arheu.gds.message.data.impl.AttachmentResponseAckResultHolderImpl;
 import hu.arheu.gds.message.data.impl.AttachmentResultHolderImpl;
+import hu.arheu.gds.message.data.impl.MessageData10QueryRequestImpl;
 import hu.arheu.gds.message.data.impl.MessageData7AttachmentResponseAckImpl;
 import hu.arheu.gds.message.header.MessageHeader;
 import hu.arheu.gds.message.header.MessageHeaderBase;
 import hu.gds.jdbc.error.GdsException;
+import hu.gds.jdbc.util.ConcurrencyLimiter;
+import hu.gds.jdbc.util.DeadlineTimer;
+import hu.gds.jdbc.util.Futures;
+import hu.gds.jdbc.util.RequestIdGenerator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.Timeout;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
+import java.util.Base64;
 import java.util.Collections;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Logger;
 
@@ -26,32 +39,156 @@ import java.util.logging.Logger;
  * This class holds and manages the connection towards the GDS.
  */
 public class GdsConnection {
-    private final AsyncGDSClient client;
+    private final GdsClientURI clientURI;
+    private final String host;
+    private volatile AsyncGDSClient client;
+    /*
+        Increased with every new client of a reconnect, the callbacks of the previous clients are ignored.
+     */
+    private volatile int generation = 0;
+    private volatile boolean reconnecting = false;
+    private int reconnectAttempts = 0;
     private boolean connected = false;
     private boolean inited = false;
     private boolean initialized = false;
     private boolean closed = false;
+    //set while the close drains the requests in flight, the new requests are refused meanwhile.
+    private volatile boolean closing = false;
+    //the milliseconds the login and the close may take, 0 leaves the login without a limit, the close waits at most CLOSE_TIMEOUT_MAX.
+    private volatile int networkTimeout;
     private String reason = null;
     private final Object lock = new Object();
-    private final Set<OneTimeSyncTransactionExecutor> executors = ConcurrentHashMap.newKeySet(); //Thread safe concurrent set
+    /*
+        The pending executors indexed by the id of their request, so the replies are routed without
+        visiting the other in-flight requests.
+     */
+    private final ConcurrentHashMap<String, TransactionExecutor> executors = new ConcurrentHashMap<>();
+    private final RequestIdGenerator requestIdGenerator = new RequestIdGenerator();
+    /*
+        With multiplex the logical connections to the same gate with the same user and settings share one connection,
+        the replies are told apart by the request ids. The connection is closed with the last of them.
+     */
+    private static final ConcurrentHashMap<String, CompletableFuture<GdsConnection>> SHARED = new ConcurrentHashMap<>();
+    private final String sharedKey;
+    private final GateBalancer.Gate gate;
+    private final ConcurrencyLimiter limiter;
+    private int references = 1;
+
+    /*
+        The cheapest query answered by every gate, its reply proves the connection is alive.
+     */
+    private static final String PING_SQL = "SELECT table_name FROM \"@gds.config.store.tables\" LIMIT 1";
+    private static final double ROUND_TRIP_WEIGHT = 0.2;
+    //the exponentially weighted moving average of the ping round trips in milliseconds, -1 before the first one.
+    private volatile double roundTripMillis = -1;
+
+    //the milliseconds the close may take with a network timeout of 0, a gate not answering can not hang it.
+    private static final int CLOSE_TIMEOUT_MAX = DriverPropertyInfoHelper.NETWORK_TIMEOUT_DEFAULT;
+
+    private static final long RECONNECT_BACKOFF_INITIAL = 100;
+    private static final long RECONNECT_BACKOFF_MAX = 10_000;
+    private static final ExecutorService RECONNECT = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gds-jdbc-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     private static final Logger LOG = Logger.getLogger(GdsConnection.class.getName());
 
-    public class OneTimeSyncTransactionExecutor {
+    /**
+     * Sends one request to the GDS and completes its future when the reply arrives.
+     * <p>
+     * Nothing is blocked while the request is in flight: the future is completed from the listener,
+     * a failed send completes it exceptionally, and the timeout is served by the shared {@link DeadlineTimer}.
+     * Over the limit of the {@link ConcurrencyLimiter} of the connection the request waits for a free slot
+     * before it is sent.
+     */
+    public class TransactionExecutor {
         private final MessageData requestData;
         private final String requestIdToWaitFor;
         private final long timeoutMillis;
-        private final Object executorLock = new Object();
-        private MessageData result = null;
-        private Throwable cause = null;
+        private final CompletableFuture<MessageData> result = new CompletableFuture<>();
+        //the generation of the client the request was sent with, -1 if it was not sent yet.
+        private int sentGeneration = -1;
+        private Timeout timeout;
+        private final Runnable waiter = this::slotGranted;
+        private Timeout queueTimeout;
+        private boolean holdsSlot = false;
+        //false for the requests bypassing the limiter.
+        private final boolean limited;
+        private long sentAt;
+
+        public TransactionExecutor(MessageData requestData,
+                                   String requestIdToWaitFor,
+                                   long timeoutMillis) {
+            this(requestData, requestIdToWaitFor, timeoutMillis, true);
+        }
 
-        public OneTimeSyncTransactionExecutor(MessageData requestData,
-                                              String requestIdToWaitFor,
-                                              long timeoutMillis) throws Throwable {
+        private TransactionExecutor(MessageData requestData,
+                                    String requestIdToWaitFor,
+                                    long timeoutMillis,
+                                    boolean limited) {
             this.requestData = requestData;
             this.requestIdToWaitFor = requestIdToWaitFor;
             this.timeoutMillis = timeoutMillis;
-            sendRequest();
+            this.limited = limited;
+            result.whenComplete((data, cause) -> {
+                suspendTimeout();
+                executors.remove(requestIdToWaitFor, this);
+                releaseSlot(cause);
+                if (closing) {
+                    synchronized (lock) {
+                        lock.notifyAll();
+                    }
+                }
+            });
+            if (closing) {
+                setCause(new SQLException("The connection is closing"));
+                return;
+            }
+            executors.put(requestIdToWaitFor, this);
+            if (!limited) {
+                send();
+            } else if (limiter.acquire(waiter)) {
+                slotGranted();
+            } else {
+                synchronized (this) {
+                    if (holdsSlot || result.isDone()) {
+                        return;
+                    }
+                    queueTimeout = DeadlineTimer.schedule(() -> {
+                        if (limiter.cancel(waiter, true)) {
+                            setCause(new TimeoutException("the request with request id: " + requestIdToWaitFor
+                                    + " waited more than " + clientURI.concurrencyQueueTimeout + " ms to be sent"));
+                        }
+                    }, clientURI.concurrencyQueueTimeout);
+                }
+            }
+        }
+
+        /**
+         * @return The future of the reply for the request
+         */
+        public CompletableFuture<MessageData> getResultFuture() {
+            return result;
+        }
+
+        /**
+         * @return The future of the query result for 10 and 12 query request
+         */
+        public CompletableFuture<MessageData11QueryRequestAck> getQueryResultFuture() {
+            return result.thenApply(MessageData::asQueryRequestAckMessageData11);
+        }
+
+        /**
+         * @return The future of the DML result for 2 event request
+         */
+        public CompletableFuture<MessageData3EventAck> getDmlResultFuture() {
+            return result.thenApply(MessageData::asEventAckMessageData3);
+        }
+
+        public CompletableFuture<MessageData7AttachmentResponseAck> getOrphanAttachmentInsertResultFuture() {
+            return result.thenApply(MessageData::asAttachmentResponseAckMessageData7);
         }
 
         /**
@@ -60,7 +197,7 @@ public class GdsConnection {
          * @return The query result for 10 and 12 query request
          */
         public MessageData11QueryRequestAck executeAndGetQueryResult() throws Throwable {
-            return getResult().asQueryRequestAckMessageData11();
+            return Futures.await(getQueryResultFuture());
         }
 
         /**
@@ -69,47 +206,95 @@ public class GdsConnection {
          * @return The DML result for 2 event request
          */
         public MessageData3EventAck executeAndGetDmlResult() throws Throwable {
-            return getResult().asEventAckMessageData3();
+            return Futures.await(getDmlResultFuture());
         }
 
         public MessageData7AttachmentResponseAck executeAndGetOrphanAttachmentInsertResult() throws Throwable {
-            return getResult().asAttachmentResponseAckMessageData7();
+            return Futures.await(getOrphanAttachmentInsertResultFuture());
         }
 
-        private MessageData getResult() throws Throwable {
-            synchronized (executorLock) {
-                if (null != result) {
-                    executors.remove(this);
-                    return result;
-                }
-                if (null != cause) {
-                    executors.remove(this);
-                    throw cause;
-                }
-                executorLock.wait(timeoutMillis);
-                executors.remove(this);
-                if (null != cause) {
-                    throw cause;
-                }
-                if (null == result) {
-                    throw new TimeoutException("the query with request id: " + requestIdToWaitFor + " timed out");
+        /*
+            The attachment request response as a 5 type ack response or
+            6 type attachment response
+         */
+        public MessageData executeAndGetAttachmentQueryResult() throws Throwable {
+            return Futures.await(result);
+        }
+
+        /*
+            The slot is handed over under the lock of the executor, so it is released exactly once,
+            even if the request completed (timed out, was cancelled) meanwhile.
+         */
+        private void slotGranted() {
+            boolean completed;
+            synchronized (this) {
+                completed = result.isDone();
+                if (!completed) {
+                    holdsSlot = true;
+                    sentAt = System.nanoTime();
+                    if (null != queueTimeout) {
+                        queueTimeout.cancel();
+                        queueTimeout = null;
+                    }
                 }
-                return result;
+            }
+            if (completed) {
+                limiter.releaseUnused();
+            } else {
+                send();
             }
         }
 
-        private void sendRequest() throws Throwable {
-            executors.add(this);
-            ChannelFuture sendFuture = client.sendMessage(requestIdToWaitFor, requestData);
-            sendFuture.sync();
+        private void releaseSlot(Throwable cause) {
+            boolean held;
+            synchronized (this) {
+                held = holdsSlot;
+                holdsSlot = false;
+                if (null != queueTimeout) {
+                    queueTimeout.cancel();
+                    queueTimeout = null;
+                }
+            }
+            if (!held) {
+                limiter.cancel(waiter, false);
+            } else if (null == cause || cause instanceof TimeoutException) {
+                limiter.release(sentAt, null != cause);
+            } else {
+                //a lost connection or a cancelled request tells nothing about the latency of the gate
+                limiter.releaseUnused();
+            }
         }
 
         /*
-            The attachment request response as a 5 type ack response or
-            6 type attachment response
+            While the connection is reconnecting the request is held back, it is sent when the new client is
+            logged in. The timeout runs from the (last) send.
          */
-        public MessageData executeAndGetAttachmentQueryResult() throws Throwable {
-            return getResult();
+        private void send() {
+            AsyncGDSClient sendClient;
+            synchronized (this) {
+                int current = generation;
+                if (result.isDone() || reconnecting || sentGeneration == current) {
+                    return;
+                }
+                sentGeneration = current;
+                sendClient = client;
+                if (null != timeout) {
+                    timeout.cancel();
+                }
+                timeout = DeadlineTimer.schedule(() -> setCause(
+                        new TimeoutException("the query with request id: " + requestIdToWaitFor + " timed out")),
+                        timeoutMillis);
+            }
+            try {
+                ChannelFuture sendFuture = sendClient.sendMessage(requestIdToWaitFor, requestData);
+                sendFuture.addListener((ChannelFutureListener) future -> {
+                    if (!future.isSuccess()) {
+                        setCause(future.cause());
+                    }
+                });
+            } catch (Throwable ex) {
+                setCause(ex);
+            }
         }
 
         private void setAttachmentResult(String ownerTable, String attachmentId, MessageData data) {
@@ -162,29 +347,97 @@ public class GdsConnection {
             }
         }
 
+        /**
+         * Stops waiting for the reply, the reply is dropped if it arrives later.
+         */
+        public void cancel() {
+            result.cancel(false);
+        }
+
         private void setCause(Throwable cause) {
-            synchronized (executorLock) {
-                this.cause = cause;
-                executorLock.notifyAll();
-            }
+            result.completeExceptionally(cause);
         }
 
         private void setResult(MessageData data) {
-            synchronized (executorLock) {
-                result = data;
-                executorLock.notifyAll();
-            }
+            result.complete(data);
         }
 
         private void disconnected() {
-            synchronized (executorLock) {
-                cause = new SQLException("Connection lost with server");
-                executorLock.notifyAll();
+            setCause(new SQLException("Connection lost with server"));
+        }
+
+        private void closedBeforeReply() {
+            setCause(new SQLException("The connection was closed before the reply arrived"));
+        }
+
+        private synchronized void suspendTimeout() {
+            if (null != timeout) {
+                timeout.cancel();
+                timeout = null;
+            }
+        }
+
+        /*
+            The queries and the next page requests only read, they can be sent again after a reconnect.
+         */
+        private boolean isReplayable() {
+            return requestData instanceof MessageData10QueryRequest || requestData instanceof MessageData12NextQueryPage;
+        }
+
+        /*
+            Called when the client of the given generation is lost and the connection reconnects:
+            the requests not sent yet wait for the new client, the sent queries are sent again,
+            the other sent requests fail, as they may have been executed.
+         */
+        private void reconnecting(int lostGeneration) {
+            boolean sent;
+            synchronized (this) {
+                sent = sentGeneration == lostGeneration;
+            }
+            if (sent && !isReplayable()) {
+                disconnected();
+            } else {
+                suspendTimeout();
             }
         }
+
+        /*
+            Called when the new client logged in: the request is sent if it holds a slot of the limiter
+            (a query sent with the lost client, or a request granted its slot during the reconnect).
+            The requests still queued are sent by the limiter when their slot is granted.
+         */
+        private void reconnected() {
+            synchronized (this) {
+                if (result.isDone() || (limited && !holdsSlot)) {
+                    return;
+                }
+            }
+            send();
+        }
     }
 
     public GdsConnection(GdsClientURI clientURI) throws Throwable {
+        this(clientURI, null, null);
+    }
+
+    /**
+     * @param gate      the gate to connect to, null for the first host of the url
+     * @param sharedKey the key of the connection among the shared ones, null if it is not shared
+     */
+    GdsConnection(GdsClientURI clientURI, GateBalancer.Gate gate, String sharedKey) throws Throwable {
+        this.sharedKey = sharedKey;
+        this.gate = gate;
+        this.clientURI = clientURI;
+        this.limiter = new ConcurrencyLimiter(clientURI.concurrencyLimitInitial, clientURI.concurrencyLimitMax);
+        this.networkTimeout = clientURI.networkTimeout;
+        this.host = null != gate ? gate.host : clientURI.hosts.isEmpty() ? clientURI.host : clientURI.hosts.get(0);
+        this.client = buildClient(0);
+    }
+
+    /*
+        The callbacks of the client are ignored once a reconnect replaced it with a newer one.
+     */
+    private AsyncGDSClient buildClient(int clientGeneration) throws Throwable {
         AsyncGDSClient.AsyncGDSClientBuilder builder = AsyncGDSClient.getBuilder();
         builder
                 .withUserName(clientURI.userName)
@@ -194,23 +447,52 @@ public class GdsConnection {
                 .withListener(new GDSMessageListener() {
 
                     public void onMessageReceived(MessageHeader header, MessageData data) {
-                        for (OneTimeSyncTransactionExecutor executor : executors) {
-                            executor.messageReceived(header, data);
+                        if (data.isAttachmentResponseMessageData6()) {
+                            /*
+                                By type 6 the response may answer several requests at once
+                             */
+                            for (String requestId : data.asAttachmentResponseMessageData6().getResult().getRequestIds()) {
+                                TransactionExecutor executor = executors.get(requestId);
+                                if (null != executor) {
+                                    executor.messageReceived(header, data);
+                                }
+                            }
+                        } else {
+                            TransactionExecutor executor =
+                                    executors.get(header.asBaseMessageHeader().getMessageId());
+                            if (null != executor) {
+                                executor.messageReceived(header, data);
+                            }
                         }
                     }
 
                     @Override
                     public void onConnectionSuccess(Channel ch, MessageHeaderBase header, MessageData1ConnectionAck response) {
+                        boolean reconnected;
                         synchronized (lock) {
+                            if (clientGeneration != generation) {
+                                return;
+                            }
                             connected = true;
                             inited = true;
                             lock.notifyAll();
+                            reconnected = reconnecting;
+                            reconnecting = false;
+                            reconnectAttempts = 0;
+                        }
+                        if (reconnected) {
+                            for (TransactionExecutor executor : executors.values()) {
+                                executor.reconnected();
+                            }
                         }
                     }
 
                     @Override
                     public void onConnectionFailure(Channel channel, Either<Throwable, Pair<MessageHeaderBase, MessageData1ConnectionAck>> reason) {
                         synchronized (lock) {
+                            if (clientGeneration != generation) {
+                                return;
+                            }
                             connected = false;
                             if (null != reason && reason.isLeftSet() && null != reason.getLeft()) {
                                 GdsConnection.this.reason = reason.getLeft().getMessage();
@@ -219,12 +501,16 @@ public class GdsConnection {
                             }
                             inited = true;
                             lock.notifyAll();
+                            if (reconnecting && !closed) {
+                                scheduleReconnect();
+                                return;
+                            }
                             try {
-                                GdsConnection.this.close();
+                                GdsConnection.this.closeClient();
                             } catch (SQLException ignored) {
                             }
                         }
-                        for (OneTimeSyncTransactionExecutor executor : executors) {
+                        for (TransactionExecutor executor : executors.values()) {
                             executor.disconnected();
                         }
                     }
@@ -232,15 +518,27 @@ public class GdsConnection {
                     @Override
                     public void onDisconnect(Channel channel) {
                         synchronized (lock) {
+                            if (clientGeneration != generation) {
+                                return;
+                            }
+                            boolean wasConnected = connected;
                             connected = false;
                             inited = true;
                             lock.notifyAll();
+                            if (clientURI.reconnect && wasConnected && !closed) {
+                                reconnecting = true;
+                                for (TransactionExecutor executor : executors.values()) {
+                                    executor.reconnecting(clientGeneration);
+                                }
+                                scheduleReconnect();
+                                return;
+                            }
                             try {
-                                GdsConnection.this.close();
+                                GdsConnection.this.closeClient();
                             } catch (SQLException ignored) {
                             }
                         }
-                        for (OneTimeSyncTransactionExecutor executor : executors) {
+                        for (TransactionExecutor executor : executors.values()) {
                             executor.disconnected();
                         }
                     }
@@ -287,21 +585,213 @@ public class GdsConnection {
                 });
         if (clientURI.sslEnabled) {
             builder
-                    .withURI("wss://" + clientURI.host + "/" + clientURI.gateUrl)
+                    .withURI("wss://" + host + "/" + clientURI.gateUrl)
                     .withTLS(clientURI.keyStorePath, clientURI.keyStorePassword);
         } else {
             builder
-                    .withURI("ws://" + clientURI.host + "/" + clientURI.gateUrl);
+                    .withURI("ws://" + host + "/" + clientURI.gateUrl);
         }
-        client = builder.build();
+        return builder.build();
     }
 
-    public OneTimeSyncTransactionExecutor getNewExecutor(MessageData data, String queryId, long timeoutMillis) throws Throwable {
-        return new OneTimeSyncTransactionExecutor(data, queryId, timeoutMillis);
+    /*
+        Called with the lock held, the next login attempt is made after an exponential backoff.
+        The pending requests fail once the attempts are used up.
+     */
+    private void scheduleReconnect() {
+        if (reconnectAttempts >= clientURI.reconnectAttempts) {
+            reconnecting = false;
+            reason = "Reconnect failed after " + reconnectAttempts + " attempts";
+            try {
+                closeClient();
+            } catch (SQLException ignored) {
+            }
+            for (TransactionExecutor executor : executors.values()) {
+                executor.disconnected();
+            }
+            return;
+        }
+        long delay = Math.min(RECONNECT_BACKOFF_MAX, RECONNECT_BACKOFF_INITIAL << Math.min(reconnectAttempts, 16));
+        reconnectAttempts++;
+        DeadlineTimer.schedule(() -> RECONNECT.execute(this::reconnect), delay);
     }
 
     /*
-        Connect and send login to GDS
+        The lost client is closed and the new one connects without the lock, so the requests, the callbacks
+        and the close are not held up by a slow gate. A close or a newer attempt meanwhile abandons this one.
+     */
+    private void reconnect() {
+        AsyncGDSClient lost;
+        int next;
+        synchronized (lock) {
+            if (closed || !reconnecting) {
+                return;
+            }
+            lost = client;
+            next = ++generation;
+            inited = false;
+        }
+        try {
+            lost.close();
+        } catch (Throwable ignored) {
+        }
+        AsyncGDSClient nextClient;
+        try {
+            nextClient = buildClient(next);
+            synchronized (lock) {
+                if (closed || !reconnecting || next != generation) {
+                    return;
+                }
+                client = nextClient;
+            }
+            nextClient.connect();
+        } catch (Throwable ex) {
+            LOG.warning("Reconnect to " + host + " failed: " + ex.getMessage());
+            synchronized (lock) {
+                if (!closed && reconnecting && next == generation) {
+                    scheduleReconnect();
+                }
+            }
+            return;
+        }
+        synchronized (lock) {
+            if (!closed) {
+                return;
+            }
+        }
+        //closed while connecting, the close may have missed the new client
+        try {
+            nextClient.close();
+        } catch (Throwable ignored) {
+        }
+    }
+
+    /**
+     * @return the connection shared by the logical connections with the same gate, user and connection settings,
+     * its reference count is increased, it is opened if there is no open one yet
+     */
+    static GdsConnection acquireShared(GdsClientURI clientURI) throws Throwable {
+        String key = sharedKey(clientURI);
+        while (true) {
+            CompletableFuture<GdsConnection> created = new CompletableFuture<>();
+            CompletableFuture<GdsConnection> existing = SHARED.putIfAbsent(key, created);
+            if (null == existing) {
+                try {
+                    GdsConnection connection = clientURI.connectToGate(key);
+                    created.complete(connection);
+                    return connection;
+                } catch (Throwable ex) {
+                    SHARED.remove(key, created);
+                    created.completeExceptionally(ex);
+                    throw ex;
+                }
+            }
+            GdsConnection connection = Futures.await(existing);
+            if (connection.retain()) {
+                return connection;
+            }
+            //closed or lost in the meantime, a new one is opened
+            SHARED.remove(key, existing);
+        }
+    }
+
+    /*
+        Every setting the shared connection is opened and run with is part of the key, the logical connections
+        with different settings get connections of their own. The passwords are only kept as a digest.
+     */
+    static String sharedKey(GdsClientURI clientURI) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(String.valueOf(clientURI.password).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        digest.update(String.valueOf(clientURI.keyStorePassword).getBytes(StandardCharsets.UTF_8));
+        return clientURI.host + "/" + clientURI.gateUrl + "|" + clientURI.userName
+                + "|" + Base64.getEncoder().encodeToString(digest.digest())
+                + "|" + clientURI.sslEnabled + "|" + clientURI.keyStorePath + "|" + clientURI.serveOnTheSameConnection
+                + "|" + clientURI.gatePolicy + "|" + clientURI.gateCoolDown
+                + "|" + clientURI.reconnect + "|" + clientURI.reconnectAttempts
+                + "|" + clientURI.timeout + "|" + clientURI.networkTimeout
+                + "|" + clientURI.concurrencyLimitInitial + "|" + clientURI.concurrencyLimitMax
+                + "|" + clientURI.concurrencyQueueTimeout;
+    }
+
+    private boolean retain() {
+        synchronized (lock) {
+            if (closed || !connected) {
+                return false;
+            }
+            references++;
+            return true;
+        }
+    }
+
+    public TransactionExecutor getNewExecutor(MessageData data, String queryId, long timeoutMillis) {
+        return new TransactionExecutor(data, queryId, timeoutMillis);
+    }
+
+    /**
+     * Sends a cheap query, and completes the returned future with the round trip in milliseconds
+     * when the reply arrives. The round trip is added to the moving average of the connection.
+     */
+    public CompletableFuture<Double> ping(long timeoutMillis) {
+        if (!connected) {
+            return Futures.failed(new SQLException("Connection lost with server"));
+        }
+        long start = System.nanoTime();
+        try {
+            MessageData data = new MessageData10QueryRequestImpl(PING_SQL, ConsistencyType.NONE, timeoutMillis, 1, 0);
+            //the ping bypasses the limiter, a busy connection is not a dead one
+            return new TransactionExecutor(data, nextRequestId(), timeoutMillis, false).getResultFuture().thenApply(reply -> {
+                double elapsed = (System.nanoTime() - start) / 1_000_000.0;
+                synchronized (lock) {
+                    roundTripMillis = roundTripMillis < 0
+                            ? elapsed
+                            : roundTripMillis + ROUND_TRIP_WEIGHT * (elapsed - roundTripMillis);
+                }
+                if (null != gate) {
+                    gate.recordLatency(elapsed);
+                }
+                return elapsed;
+            });
+        } catch (Throwable ex) {
+            return Futures.failed(ex);
+        }
+    }
+
+    /**
+     * @return the limiter of the requests in flight, with its limit and queue depth
+     */
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * @return the moving average of the ping round trips in milliseconds, -1 if there was no ping yet
+     */
+    public double getRoundTripMillis() {
+        return roundTripMillis;
+    }
+
+    /**
+     * Sets the milliseconds the close of the connection may take, 0 waits at most 30 seconds.
+     * A shared connection has one network timeout for all of its users.
+     */
+    public void setNetworkTimeout(int milliseconds) {
+        networkTimeout = milliseconds;
+    }
+
+    public int getNetworkTimeout() {
+        return networkTimeout;
+    }
+
+    /**
+     * @return a new message id, unique among the requests sent on this connection.
+     */
+    public String nextRequestId() {
+        return requestIdGenerator.nextId();
+    }
+
+    /*
+        Connect and send login to GDS, waiting at most the network timeout for the login to be answered.
      */
     public void initConnection() throws Throwable {
         synchronized (lock) {
@@ -309,10 +799,18 @@ public class GdsConnection {
                 client.close();
                 throw new GdsException("Connection failed, already closed");
             }
+            int timeout = networkTimeout;
+            long deadline = System.nanoTime() + timeout * 1_000_000L;
             client.connect();
             initialized = true;
-            if (!inited) {
-                lock.wait();
+            while (!inited) {
+                if (!awaitLock(deadline, timeout)) {
+                    //a late answer of the abandoned login is ignored
+                    generation++;
+                    closed = true;
+                    client.close();
+                    throw new GdsException("Connection failed: the login was not answered in " + timeout + " ms");
+                }
             }
             if (!connected) {
                 if (null != reason) {
@@ -324,23 +822,100 @@ public class GdsConnection {
         }
     }
 
+    /**
+     * Closes the connection, a shared connection is only closed by its last user.
+     * Every user closes it once, see {@link GdsJdbcConnection#close()}, the calls after the last one do nothing.
+     */
     public void close() throws SQLException {
         synchronized (lock) {
-            closed = true;
-            client.close();
+            if (0 == references || --references > 0) {
+                return;
+            }
+        }
+        closeClient();
+    }
+
+    /*
+        The requests in flight get their replies until the network timeout (or at most CLOSE_TIMEOUT_MAX
+        with a network timeout of 0), the new ones are refused.
+        The requests still pending at the end fail, and the close of the client is awaited for the rest
+        of the timeout, so a gate not answering can not hold up the caller.
+     */
+    private void closeClient() throws SQLException {
+        if (null != sharedKey) {
+            SHARED.computeIfPresent(sharedKey, (key, shared) ->
+                    shared.isDone() && !shared.isCompletedExceptionally() && this == shared.join() ? null : shared);
+        }
+        int timeout = 0 < networkTimeout ? networkTimeout : CLOSE_TIMEOUT_MAX;
+        long deadline = System.nanoTime() + timeout * 1_000_000L;
+        boolean abandoned;
+        synchronized (lock) {
+            if (closed) {
+                //closed by a failed login or by the lost connection already, its requests were failed then
+                return;
+            }
+            try {
+                if (connected && !reconnecting && !closed) {
+                    closing = true;
+                    //the completed requests notify the lock
+                    while (connected && !reconnecting && !executors.isEmpty()) {
+                        if (!awaitLock(deadline, timeout)) {
+                            break;
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
+            } finally {
+                closed = true;
+                abandoned = reconnecting;
+                reconnecting = false;
+                client.close();
+            }
+        }
+        for (TransactionExecutor executor : executors.values()) {
+            if (abandoned) {
+                //the requests held back for the reconnect would wait forever
+                executor.disconnected();
+            } else {
+                executor.closedBeforeReply();
+            }
+        }
+        synchronized (lock) {
             if (!initialized) {
                 return;
             }
-            if (connected) {
-                try {
-                    lock.wait();
-                } catch (InterruptedException e) {
-                    throw new SQLException(e);
+            try {
+                while (connected) {
+                    if (!awaitLock(deadline, timeout)) {
+                        LOG.warning("The connection to " + host + " was not closed in " + timeout + " ms");
+                        connected = false;
+                        return;
+                    }
                 }
+            } catch (InterruptedException e) {
+                throw new SQLException(e);
             }
         }
     }
 
+    /*
+        Waits on the lock held by the caller, without a limit if the timeout is 0.
+        Returns false once the deadline passed.
+     */
+    private boolean awaitLock(long deadlineNanos, int timeoutMillis) throws InterruptedException {
+        if (timeoutMillis <= 0) {
+            lock.wait();
+            return true;
+        }
+        long remaining = (deadlineNanos - System.nanoTime()) / 1_000_000L;
+        if (remaining <= 0) {
+            return false;
+        }
+        lock.wait(remaining);
+        return true;
+    }
+
     public boolean isDisconnected() {
         return !connected;
     }
@@ -6,11 +6,10 @@ import hu.gds.jdbc.error.TypeMismatchException;
 import hu.gds.jdbc.metainfo.ColumnInfo;
 import hu.gds.jdbc.metainfo.GdsTable;
 import hu.gds.jdbc.metainfo.GdsTableType;
+import hu.gds.jdbc.metainfo.SchemaCache;
 import hu.gds.jdbc.resultset.DQLResultSet;
-import hu.gds.jdbc.resultset.GdsResultSetMetaData;
 import hu.gds.jdbc.util.WildcardTranslator;
 import org.jetbrains.annotations.NotNull;
-import org.msgpack.value.ImmutableNilValue;
 import org.msgpack.value.Value;
 import org.msgpack.value.impl.ImmutableBooleanValueImpl;
 import org.msgpack.value.impl.ImmutableLongValueImpl;
@@ -36,11 +35,6 @@ public class GdsDatabaseMetaData implements DatabaseMetaData {
     private static final String TABLE_TYPE = "TABLE";
     private static final String TRANSFORMATION_TYPE = "TRANSFORMATION";
 
-    private static final String GDS_TABLE_NAME_FIELD = "table_name";
-
-    private static final ImmutableNilValue NIL_VALUE = ImmutableNilValueImpl.get();
-
-
     private static final List<FieldHolder> SCHEMA_FIELDS =
             new ArrayList<>(Arrays.asList(new FieldHolderImpl("TABLE_SCHEM", FieldValueType.TEXT, ""),
                     new FieldHolderImpl("TABLE_CATALOG", FieldValueType.TEXT, "")));
@@ -849,18 +843,18 @@ public class GdsDatabaseMetaData implements DatabaseMetaData {
      * The name of the TYPES that are special categories (like Config or List) not user tables.
      */
     private final static Set<String> GDS_SYSTEM_TABLE_TYPES = new HashSet<>();
-    private final static String SELECT_FROM_GDS_CONFIG_STORE_TABLES = "SELECT * FROM \"@gds.config.store.tables\"";
 
     /**
-     * Every table in the GDS visible by the current user.
+     * The system tables of the GDS, by their names.
      */
-    private final TreeMap<String, GdsTable> availableTables = new TreeMap<>();
+    private final static TreeMap<String, GdsTable> SYSTEM_TABLES = new TreeMap<>();
 
     static {
         createConfigSystemTables();
         createListSystemTables();
         createTransformationSystemTables();
         createGeneralTables();
+        describeSystemTables();
     }
 
     private static void createConfigSystemTables() {
@@ -998,94 +992,56 @@ public class GdsDatabaseMetaData implements DatabaseMetaData {
         tableHolder.addTable(currentTable);
     }
 
-    public void calculateAvailableTablesAndDescriptors() throws SQLException {
-        availableTables.clear();
+    /*
+        The system tables are the same for every connection, only their JDBC descriptors are set here.
+     */
+    private static void describeSystemTables() {
         for (GdsTableType descriptor : GDS_ALL_TABLE_TYPES.values()) {
             for (Map.Entry<String, GdsTable> entry : descriptor.getTables().entrySet()) {
                 GdsTable metaTable = entry.getValue();
-                metaTable.setJDBCDescriptor(new ArrayList<>(Arrays.asList(
-                        NIL_VALUE, //TABLE_CAT
-                        NIL_VALUE, //TABLE_SCHEM
-                        new ImmutableStringValueImpl(metaTable.getTableName()), //TABLE_NAME
-                        new ImmutableStringValueImpl(entry.getKey()), //TABLE_TYPE
-                        new ImmutableStringValueImpl(""), //REMARKS
-                        NIL_VALUE, //TYPE_CAT
-                        NIL_VALUE, //TYPE_SCHEM
-                        NIL_VALUE, //TYPE_NAME
-                        NIL_VALUE, //SELF_REFERENCING_COL_NAME
-                        NIL_VALUE //REF_GENERATION
-                )));
-                for (ColumnInfo column : metaTable.getColumnsByOrdinal().values()) {
-                    metaTable.addColumn(column);
-                }
-                availableTables.put(metaTable.getTableName(), metaTable);
+                metaTable.setJDBCDescriptor(SchemaCache.createTableDescriptor(metaTable.getTableName(), entry.getKey()));
+                SYSTEM_TABLES.put(metaTable.getTableName(), metaTable);
             }
         }
+    }
 
-        ResultSet resultSet = connection.createStatement().executeQuery(SELECT_FROM_GDS_CONFIG_STORE_TABLES);
-        while (resultSet.next()) {
-            String tableName = resultSet.getString(GDS_TABLE_NAME_FIELD);
-            GdsTable table = new GdsTable(tableName, TABLE_TYPE, false);
-            table.setJDBCDescriptor(new ArrayList<>(Arrays.asList(
-                    NIL_VALUE, //TABLE_CAT
-                    NIL_VALUE, //TABLE_SCHEM
-                    new ImmutableStringValueImpl(tableName), //TABLE_NAME
-                    new ImmutableStringValueImpl(TABLE_TYPE), //TABLE_TYPE
-                    new ImmutableStringValueImpl(""), //REMARKS
-                    NIL_VALUE, //TYPE_CAT
-                    NIL_VALUE, //TYPE_SCHEM
-                    NIL_VALUE, //TYPE_NAME
-                    NIL_VALUE, //SELF_REFERENCING_COL_NAME
-                    NIL_VALUE //REF_GENERATION
-            )));
-            String sql = "SELECT * FROM \"@gds.config.store.schema\" WHERE table='" + tableName + "'";
-            ResultSet resultSet2 = connection.createStatement().executeQuery(sql);
-            Map<String, FieldHolder> fieldHolderMap = new HashMap<>();
-            while (resultSet2.next()) {
-                String fieldType = resultSet2.getString("field_type");
-                String columnName = resultSet2.getString("field_name");
-                FieldHolder column = new FieldHolderImpl(columnName, FieldValueType.valueOf(fieldType.toUpperCase()), "");
-                fieldHolderMap.put(columnName, column);
+    /**
+     * Reloads the columns of every table visible by the current user into the schema cache of the connection.
+     * The tables are otherwise discovered lazily, when they are first asked for.
+     */
+    public void calculateAvailableTablesAndDescriptors() throws SQLException {
+        connection.getSchemaCache().reload();
+    }
+
+    /*
+        The system tables and the user tables whose name passes the check, ordered by their names.
+        The columns of the user tables are only loaded if asked for, the missing ones discovered together.
+     */
+    private TreeMap<String, GdsTable> getAvailableTables(Function<String, Boolean> tableNameCheck,
+                                                         boolean withColumns) throws SQLException {
+        TreeMap<String, GdsTable> availableTables = new TreeMap<>();
+        for (GdsTable table : SYSTEM_TABLES.values()) {
+            if (tableNameCheck.apply(table.getTableName())) {
+                availableTables.put(table.getTableName(), table);
             }
-            ResultSet orderedColumnSet = connection.createStatement().executeQuery(
-                    String.format("SELECT * FROM %1$s LIMIT 0", tableName));
-            ResultSetMetaData orderedColumnSetMetaData = orderedColumnSet.getMetaData();
-            for (int ii = 1; ii <= orderedColumnSetMetaData.getColumnCount(); ++ii) {
-                String columnName = orderedColumnSetMetaData.getColumnName(ii);
-                FieldHolder fieldHolderColumn = fieldHolderMap.get(columnName);
-
-                ColumnInfo columnInfo = new ColumnInfo(fieldHolderColumn, columnName, ii);
-                columnInfo.setJDBCDescriptor(Arrays.asList(
-                        ImmutableNilValueImpl.get(), //1, TABLE_CAT
-                        ImmutableNilValueImpl.get(), //2, TABLE_SCHEM
-                        new ImmutableStringValueImpl(table.getTableName()), //3, TABLE_NAME
-                        new ImmutableStringValueImpl(columnInfo.getColumnName()), //4, COLUMN_NAME
-                        new ImmutableLongValueImpl(columnInfo.getSqlType()), //5, DATA_TYPE
-                        new ImmutableStringValueImpl(columnInfo.getColumn().getFieldType().toString()), //6, TYPE_NAME
-                        new ImmutableLongValueImpl(GdsResultSetMetaData.ColumnMetaData.getDisplaySize(columnInfo.getColumn().getFieldType())), //7, COLUMN_SIZE
-                        ImmutableNilValueImpl.get(), //8, BUFFER_LENGTH, nem tudni lehet-e null?
-                        ImmutableNilValueImpl.get(), //9, DECIMAL_DIGITS
-                        new ImmutableLongValueImpl(10), //10, NUM_PREC_RADIX
-                        new ImmutableLongValueImpl(2), //11, NULLABLE (columnNoNulls - might not allow NULL values, columnNullable - definitely allows NULL values, columnNullableUnknown - nullability unknown)
-                        ImmutableNilValueImpl.get(), //12, REMARKS
-                        ImmutableNilValueImpl.get(), //13, COLUMN_DEF
-                        new ImmutableLongValueImpl(columnInfo.getSqlType()), //14, SQL_DATA_TYPE, számok, lehetne valami?
-                        ImmutableNilValueImpl.get(), //15, SQL_DATETIME_SUB, számok, lehetne valami
-                        new ImmutableLongValueImpl(0), //16, CHAR_OCTET_LENGTH, lehetne a maximum?
-                        new ImmutableLongValueImpl(columnInfo.getOrdinalPosition()), //17, ORDINAL_POSITION
-                        new ImmutableStringValueImpl(""), //18, IS_NULLABLE
-                        ImmutableNilValueImpl.get(), //19, SCOPE_CATALOG
-                        ImmutableNilValueImpl.get(), //20, SCOPE_SCHEMA
-                        ImmutableNilValueImpl.get(), //21, SCOPE_TABLE
-                        ImmutableNilValueImpl.get(), //22, SOURCE_DATA_TYPE
-                        new ImmutableStringValueImpl("NO"), //23, IS_AUTOINCREMENT
-                        new ImmutableStringValueImpl("NO") //24, IS_GENERATEDCOLUMN
-                ));
-
-                table.addColumn(columnInfo);
+        }
+        SchemaCache schemaCache = connection.getSchemaCache();
+        List<String> tableNames = new ArrayList<>();
+        for (String tableName : schemaCache.getTableNames()) {
+            if (tableNameCheck.apply(tableName)) {
+                tableNames.add(tableName);
             }
+        }
+        if (withColumns) {
+            availableTables.putAll(schemaCache.getTables(tableNames));
+            return availableTables;
+        }
+        for (String tableName : tableNames) {
+            GdsTable table = new GdsTable(tableName, TABLE_TYPE, false);
+            table.setJDBCDescriptor(SchemaCache.createTableDescriptor(tableName, TABLE_TYPE));
             availableTables.put(tableName, table);
         }
+        return availableTables;
     }
 
     private final GdsJdbcConnection connection;
@@ -1094,7 +1050,6 @@ public class GdsDatabaseMetaData implements DatabaseMetaData {
     GdsDatabaseMetaData(@NotNull GdsJdbcConnection connection, @NotNull GdsJdbcDriver driver) throws SQLException {
         this.connection = connection;
         this.driver = driver;
-        calculateAvailableTablesAndDescriptors();
     }
 
     private static MessageData11QueryRequestAck createQueryResponse(List<FieldHolder> fieldHolderList, List<List<Value>> rows) {
@@ -1162,8 +1117,8 @@ public class GdsDatabaseMetaData implements DatabaseMetaData {
         Function<String, Boolean> patternCheck = getPatternChecker(tableNamePattern);
         List<List<Value>> rows = new ArrayList<>();
 
-        for (GdsTable table : availableTables.values()) {
-            if (neededTypes.contains(table.getType()) && patternCheck.apply(table.getTableName())) {
+        for (GdsTable table : getAvailableTables(patternCheck, false).values()) {
+            if (neededTypes.contains(table.getType())) {
                 rows.add(table.getJDBCDescriptor());
             }
         }
@@ -1178,12 +1133,10 @@ public class GdsDatabaseMetaData implements DatabaseMetaData {
         Function<String, Boolean> tableNamePatternCheck = getPatternChecker(tableNamePattern);
         Function<String, Boolean> columnNamePatternCheck = getPatternChecker(columnNamePattern);
         List<List<Value>> rows = new ArrayList<>();
-        for (GdsTable table : availableTables.values()) {
-            if (tableNamePatternCheck.apply(table.getTableName())) {
-                for (ColumnInfo columnInfo : table.getColumnsByOrdinal().values()) {
-                    if (columnNamePatternCheck.apply(columnInfo.getColumnName())) {
-                        rows.add(columnInfo.getJDBCDescriptor());
-                    }
+        for (GdsTable table : getAvailableTables(tableNamePatternCheck, true).values()) {
+            for (ColumnInfo columnInfo : table.getColumnsByOrdinal().values()) {
+                if (columnNamePatternCheck.apply(columnInfo.getColumnName())) {
+                    rows.add(columnInfo.getJDBCDescriptor());
                 }
             }
         }
@@ -1195,12 +1148,8 @@ public class GdsDatabaseMetaData implements DatabaseMetaData {
         if ((null != catalogName && !"".equals(catalogName)) || (null != schemaName && !"".equals(schemaName)) || null == tableName) {
             return new DQLResultSet(EMPTY_PRIMARY_KEYS_RESPONSE, "", connection);
         }
-        String sql = "SELECT * FROM \"@gds.config.store.tables\" WHERE table='" + tableName + "'";
-
         List<List<Value>> rows = new ArrayList<>();
-        ResultSet tables = connection.createStatement().executeQuery(sql);
-        while (tables.next()) {
-            String id_field = tables.getString("id_field");
+        for (String id_field : connection.getSchemaCache().getPrimaryKeys(tableName)) {
             rows.add(new ArrayList<>(Arrays.asList(
                     ImmutableNilValueImpl.get(), //TABLE_CAT
                     ImmutableNilValueImpl.get(), //TABLE_SCHEM
@@ -1219,13 +1168,8 @@ public class GdsDatabaseMetaData implements DatabaseMetaData {
         if ((null != catalogName && !"".equals(catalogName)) || (null != schemaName && !"".equals(schemaName)) || null == tableName) {
             return new DQLResultSet(EMPTY_INDEX_INFO_RESPONSE, "", connection);
         }
-        String sql = "SELECT * FROM \"@gds.config.store.tables\" WHERE table='" + tableName + "'";
-
         List<List<Value>> rows = new ArrayList<>();
-        ResultSet tables = connection.createStatement().executeQuery(sql);
-
-        while (tables.next()) {
-            String id_field = tables.getString("id_field");
+        for (String id_field : connection.getSchemaCache().getPrimaryKeys(tableName)) {
             rows.add(new ArrayList<>(Arrays.asList(
                     ImmutableNilValueImpl.get(), //TABLE_CAT String
                     ImmutableNilValueImpl.get(), //TABLE_SCHEM String
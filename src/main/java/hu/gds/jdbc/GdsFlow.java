@@ -0,0 +1,35 @@
+package hu.gds.jdbc;
+
+/**
+ * The Reactive Streams interfaces used by the driver.
+ * <p>
+ * The driver targets Java 8, so {@code java.util.concurrent.Flow} can not be used directly.
+ * The interfaces here have the same methods and contract, a two line adapter is enough to
+ * bridge them to {@code Flow}, Reactor or RxJava.
+ */
+public final class GdsFlow {
+
+    private GdsFlow() {
+    }
+
+    @FunctionalInterface
+    public interface Publisher<T> {
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    public interface Subscriber<T> {
+        void onSubscribe(Subscription subscription);
+
+        void onNext(T item);
+
+        void onError(Throwable throwable);
+
+        void onComplete();
+    }
+
+    public interface Subscription {
+        void request(long n);
+
+        void cancel();
+    }
+}
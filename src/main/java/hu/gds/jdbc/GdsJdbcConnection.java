@@ -1,24 +1,74 @@
 package hu.gds.jdbc;
 
+import hu.gds.jdbc.metainfo.SchemaCache;
+import hu.gds.jdbc.util.MemoryBudget;
+import hu.gds.jdbc.util.PrefetchScheduler;
+
 import java.sql.*;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class GdsJdbcConnection implements Connection {
     private static final String DEFAULT_SCHEMA = "default";
     private final GdsConnection gdsConnection;
     private final GdsJdbcDriver gdsJdbcDriver;
-    private boolean isClosed = false;
+    private volatile boolean isClosed = false;
     private boolean isReadOnly = false;
     private final Properties info;
     private final GdsClientURI gdsClientURI;
+    private final MemoryBudget prefetchMemoryBudget;
+    private final StatementCache statementCache;
+    private final SchemaCache schemaCache;
+    private GdsDatabaseMetaData metaData;
 
     public GdsJdbcConnection(GdsClientURI gdsClientURI, GdsConnection gdsConnection, GdsJdbcDriver gdsJdbcDriver, Properties info) {
         this.gdsClientURI = gdsClientURI;
         this.gdsConnection = gdsConnection;
         this.gdsJdbcDriver = gdsJdbcDriver;
         this.info = info;
+        PrefetchScheduler.configure(gdsClientURI.prefetchPoolSize, gdsClientURI.prefetchVirtualThreads);
+        this.prefetchMemoryBudget = new MemoryBudget(gdsClientURI.prefetchMemoryConnection, MemoryBudget.driver());
+        this.statementCache = new StatementCache(gdsClientURI.statementCacheSize);
+        this.schemaCache = new SchemaCache(this,
+                GdsJdbcDriver.getSharedSchema(gdsClientURI),
+                gdsClientURI.schemaCacheTtl,
+                gdsClientURI.schemaDiscoveryParallelism);
+        schemaCache.attach();
+        //the last step, the request is withdrawn by the close
+        MemoryBudget.driver().requestLimit(prefetchMemoryBudget, gdsClientURI.prefetchMemoryDriver);
+    }
+
+    /**
+     * @return the state of the driver-wide prefetch scheduler serving the result sets of this connection
+     */
+    public PrefetchScheduler.Statistics getPrefetchStatistics() {
+        return PrefetchScheduler.getStatistics();
+    }
+
+    /**
+     * @return the budget of the pages prefetched by the result sets of this connection,
+     * its parent is the budget of the driver
+     */
+    public MemoryBudget getPrefetchMemoryBudget() {
+        return prefetchMemoryBudget;
+    }
+
+    /**
+     * @return the cache of the parsed and rewritten statements of this connection
+     */
+    public StatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    /**
+     * @return the cache of the tables, columns and primary keys seen by this connection
+     */
+    public SchemaCache getSchemaCache() {
+        return schemaCache;
     }
 
     public Statement createStatement() throws SQLException {
@@ -65,20 +115,31 @@ public class GdsJdbcConnection implements Connection {
         checkClosed();
     }
 
+    /**
+     * Closes the connection once, the later (or concurrent) calls do nothing, so a shared GDS connection
+     * is released exactly once by every logical connection.
+     */
     public void close() throws SQLException {
-        if (!isClosed) {
-            gdsConnection.close();
+        synchronized (this) {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
         }
-        isClosed = true;
+        prefetchMemoryBudget.close();
+        gdsConnection.close();
     }
 
     public boolean isClosed() {
         return isClosed;
     }
 
-    public DatabaseMetaData getMetaData() throws SQLException {
+    public synchronized DatabaseMetaData getMetaData() throws SQLException {
         checkClosed();
-        return new GdsDatabaseMetaData(this, gdsJdbcDriver);
+        if (null == metaData) {
+            metaData = new GdsDatabaseMetaData(this, gdsJdbcDriver);
+        }
+        return metaData;
     }
 
     public void setReadOnly(boolean readOnly) throws SQLException {
@@ -209,9 +270,36 @@ public class GdsJdbcConnection implements Connection {
         return null;
     }
 
+    /**
+     * Checks the connection with a round trip to the GDS.
+     *
+     * @param timeout the seconds to wait for the reply, 0 uses the timeout of the statements
+     */
     public boolean isValid(int timeout) throws SQLException {
-        checkClosed();
-        return true;
+        if (timeout < 0) {
+            throw new SQLException("The timeout must not be negative: " + timeout);
+        }
+        if (isClosed || !gdsConnection.isConnected()) {
+            return false;
+        }
+        long timeoutMillis = 0 == timeout ? gdsClientURI.timeout : timeout * 1000L;
+        try {
+            gdsConnection.ping(timeoutMillis).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the moving average of the round trips of {@link #isValid(int)} in milliseconds,
+     * -1 if it was not called yet
+     */
+    public double getRoundTripMillis() {
+        return gdsConnection.getRoundTripMillis();
     }
 
     public void setClientInfo(String name, String value) throws SQLClientInfoException {
@@ -260,12 +348,26 @@ public class GdsJdbcConnection implements Connection {
         throw new SQLFeatureNotSupportedException();
     }
 
+    /**
+     * Sets the milliseconds the close of the connection may take: the requests in flight get their replies
+     * until then, the ones still pending fail. The timeout is served by the shared timer of the driver,
+     * the executor is not used. The timeout of the requests is set by the timeout property and
+     * {@link Statement#setQueryTimeout(int)}.
+     */
     public void setNetworkTimeout(Executor executor, int milliseconds) throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        checkClosed();
+        if (null == executor) {
+            throw new SQLException("The executor can not be null");
+        }
+        if (milliseconds < 0) {
+            throw new SQLException("The network timeout can not be negative");
+        }
+        gdsConnection.setNetworkTimeout(milliseconds);
     }
 
     public int getNetworkTimeout() throws SQLException {
-        throw new SQLFeatureNotSupportedException();
+        checkClosed();
+        return gdsConnection.getNetworkTimeout();
     }
 
     public <T> T unwrap(Class<T> iface) throws SQLException {
@@ -1,11 +1,15 @@
 package hu.gds.jdbc;
 
 import hu.gds.jdbc.error.GdsException;
+import hu.gds.jdbc.metainfo.SharedSchema;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.file.Paths;
 import java.sql.*;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 import static hu.gds.jdbc.GdsClientURI.PREFIX;
@@ -14,6 +18,9 @@ import static hu.gds.jdbc.GdsClientURI.PREFIX;
  */
 public class GdsJdbcDriver implements Driver {
 
+    //the schema cache entries of the gates, by the gate and the user.
+    private static final Map<String, SharedSchema> SHARED_SCHEMAS = new ConcurrentHashMap<>();
+
     static {
         try {
             DriverManager.registerDriver(new GdsJdbcDriver());
@@ -31,12 +38,18 @@ public class GdsJdbcDriver implements Driver {
     public Connection connect(@NotNull String url, @Nullable Properties info) throws SQLException {
         if (acceptsURL(url)) {
             try {
+                //the settings are validated by the uri, before the connection is opened
                 GdsClientURI clientURI = new GdsClientURI(url, info);
-                GdsConnection gdsConnection = clientURI.createGdsConnection();
                 if (info == null) {
                     info = new Properties();
                 }
-                return new GdsJdbcConnection(clientURI, gdsConnection, this, info);
+                GdsConnection gdsConnection = clientURI.createGdsConnection();
+                try {
+                    return new GdsJdbcConnection(clientURI, gdsConnection, this, info);
+                } catch (RuntimeException e) {
+                    gdsConnection.close();
+                    throw e;
+                }
             } catch (Exception e) {
                 throw new GdsException(e.getMessage(), e);
             }
@@ -72,6 +85,17 @@ public class GdsJdbcDriver implements Driver {
         return 0;
     }
 
+    /**
+     * @return the schema cache entries shared by the connections to the same gate with the same user,
+     * loaded from the snapshot in the {@code schema.snapshot.dir} of the first of them if it exists
+     */
+    static SharedSchema getSharedSchema(GdsClientURI clientURI) {
+        String key = clientURI.host + "/" + clientURI.gateUrl + "|" + clientURI.userName;
+        return SHARED_SCHEMAS.computeIfAbsent(key, k -> new SharedSchema(k, null == clientURI.schemaSnapshotDir
+                ? null
+                : Paths.get(clientURI.schemaSnapshotDir)));
+    }
+
     @Override
     public boolean jdbcCompliant() {
         return false;
@@ -3,6 +3,10 @@ package hu.gds.jdbc;
 import hu.arheu.gds.message.data.ConsistencyType;
 import hu.gds.jdbc.error.InvalidParameterException;
 import hu.gds.jdbc.error.TypeMismatchException;
+import hu.gds.jdbc.resultset.AbstractGdsResultSet;
+import hu.gds.jdbc.resultset.QueryRowPublisher;
+import hu.gds.jdbc.resultset.Row;
+import hu.gds.jdbc.util.Futures;
 import hu.gds.jdbc.util.StringEscapeUtils;
 import org.jetbrains.annotations.NotNull;
 
@@ -16,10 +20,11 @@ import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.List;
 import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
 
 import static java.lang.Math.max;
 
-public class GdsPreparedStatement extends GdsBaseStatement implements PreparedStatement {
+public class GdsPreparedStatement extends GdsBaseStatement implements PreparedStatement, GdsAsyncPreparedStatement {
     //INSERT INTO MyGuests (firstname, lastname, email) VALUES (?, 'Smith', ?)
 
     //a felvágott SQL string, kiszedve belőle az összes ? -es rész.
@@ -32,8 +37,9 @@ public class GdsPreparedStatement extends GdsBaseStatement implements PreparedSt
     private final String[] inStrings;
     //a megadott értékekhez az SQL típusok.
     private final Integer[] types;
-    // Some performance caches
-    private final StringBuffer stringBuffer = new StringBuffer();
+    //a paraméterekkel együtt egyszer elemzett utasítás, null, ha nem elemezhető így.
+    private PreparedStatementTemplate template;
+    private boolean templateUnavailable = false;
 
     private final static String TRUE = "true";
     private final static String FALSE = "false";
@@ -72,6 +78,50 @@ public class GdsPreparedStatement extends GdsBaseStatement implements PreparedSt
         clearParameters();
 
         templateStrings = v.toArray(new String[0]);
+        prepareTemplate(connection.getSchemaCache()::getPrimaryKeys);
+    }
+
+    /*
+        The rewrites of a query depend on the max rows, the rewrite of an UPDATE on the primary keys of its table,
+        the template is rebuilt when they change. A template missing a primary key of the lookup is built again
+        with the next one.
+     */
+    private synchronized PreparedStatementTemplate prepareTemplate(AnalyzedStatement.PrimaryKeyLookup primaryKeys) throws SQLException {
+        if (!templateUnavailable
+                && (null == template || template.getMaxRows() != getMaxRows()
+                || !template.hasCurrentPrimaryKeys(primaryKeys))) {
+            boolean[] missed = new boolean[1];
+            template = PreparedStatementTemplate.create(this, templateStrings, getMaxRows(), tableName -> {
+                List<String> keys = primaryKeys.get(tableName);
+                missed[0] |= null == keys;
+                return keys;
+            });
+            templateUnavailable = null == template && !missed[0];
+        }
+        return template;
+    }
+
+    /**
+     * @return the analysis of the statement with the current parameters
+     */
+    private AnalyzedStatement bind() throws Throwable {
+        String[] parameters;
+        synchronized (this) {
+            parameters = inStrings.clone();
+        }
+        return bind(parameters, connection.getSchemaCache()::getPrimaryKeys);
+    }
+
+    /**
+     * @return the analysis of the statement with the given parameters and primary keys,
+     * null if the lookup missed one
+     */
+    private AnalyzedStatement bind(String[] parameters, AnalyzedStatement.PrimaryKeyLookup primaryKeys) throws Throwable {
+        PreparedStatementTemplate preparedTemplate = prepareTemplate(primaryKeys);
+        if (null != preparedTemplate) {
+            return preparedTemplate.bind(parameters);
+        }
+        return analyze(compileQuery(parameters), false, primaryKeys);
     }
 
     /**
@@ -83,15 +133,19 @@ public class GdsPreparedStatement extends GdsBaseStatement implements PreparedSt
      * @throws SQLException if an error occurs
      */
     protected synchronized String compileQuery() throws SQLException {
-        stringBuffer.setLength(0);
+        return compileQuery(inStrings);
+    }
+
+    private String compileQuery(String[] parameters) throws SQLException {
+        StringBuilder stringBuffer = new StringBuilder();
         int i;
 
-        for (i = 0; i < inStrings.length; ++i) {
-            if (inStrings[i] == null)
+        for (i = 0; i < parameters.length; ++i) {
+            if (parameters[i] == null)
                 throw new InvalidParameterException("Parameter " + (i + 1) + " is incorrect (null)!");
-            stringBuffer.append(templateStrings[i]).append(inStrings[i]);
+            stringBuffer.append(templateStrings[i]).append(parameters[i]);
         }
-        stringBuffer.append(templateStrings[inStrings.length]);
+        stringBuffer.append(templateStrings[parameters.length]);
         return stringBuffer.toString();
     }
 
@@ -202,12 +256,60 @@ public class GdsPreparedStatement extends GdsBaseStatement implements PreparedSt
     @Override
     public boolean execute() throws SQLException {
         try {
-            return executeInner(compileQuery(), false, ConsistencyType.PAGES);
+            return executeInner(bind(), ConsistencyType.PAGES);
+        } catch (SQLException e) {
+            throw e;
         } catch (Throwable t) {
             throw new SQLException(t);
         }
     }
 
+    @Override
+    public CompletableFuture<ResultSet> executeQueryAsync() {
+        return Futures.thenApply(executeAsync(), GdsBaseStatement::toQueryResult);
+    }
+
+    @Override
+    public CompletableFuture<Integer> executeUpdateAsync() {
+        return Futures.thenApply(executeAsync(), GdsBaseStatement::toUpdateCount);
+    }
+
+    @Override
+    public GdsFlow.Publisher<Row> executeQueryPublisher() {
+        try {
+            return executeQueryPublisherInner(bind(), ConsistencyType.PAGES);
+        } catch (Throwable t) {
+            return QueryRowPublisher.error(t);
+        }
+    }
+
+    /*
+        The parameters are taken when the execution is started, they may be set again before it is analyzed.
+     */
+    private CompletableFuture<AbstractGdsResultSet> executeAsync() {
+        String[] parameters;
+        synchronized (this) {
+            parameters = inStrings.clone();
+        }
+        return analyzeAsync(primaryKeys -> bind(parameters, primaryKeys))
+                .thenCompose(analyzed -> executeInnerAsync(analyzed, ConsistencyType.PAGES));
+    }
+
+    @Override
+    public CompletableFuture<ResultSet> executeQueryAsync(String sql) {
+        return Futures.failed(new SQLFeatureNotSupportedException("Method should not be called on prepared statement"));
+    }
+
+    @Override
+    public CompletableFuture<Integer> executeUpdateAsync(String sql) {
+        return Futures.failed(new SQLFeatureNotSupportedException("Method should not be called on prepared statement"));
+    }
+
+    @Override
+    public GdsFlow.Publisher<Row> executeQueryPublisher(String sql) {
+        return QueryRowPublisher.error(new SQLFeatureNotSupportedException("Method should not be called on prepared statement"));
+    }
+
     @Override
     public int executeUpdate(String sql) throws SQLException {
         throw new SQLFeatureNotSupportedException("Method should not be called on prepared statement");
@@ -437,7 +539,14 @@ public class GdsPreparedStatement extends GdsBaseStatement implements PreparedSt
 
     @Override
     public void addBatch() throws SQLException {
-        super.addBatch(compileQuery());
+        checkClosed(false);
+        try {
+            addBatch(bind());
+        } catch (SQLException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new SQLException(t);
+        }
     }
 
     @Override
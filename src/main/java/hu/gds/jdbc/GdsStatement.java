@@ -4,12 +4,15 @@ import hu.arheu.gds.message.data.ConsistencyType;
 import hu.arheu.gds.message.data.MessageData11QueryRequestAck;
 import hu.gds.jdbc.resultset.DQLResultSet;
 import hu.gds.jdbc.resultset.AbstractGdsResultSet;
+import hu.gds.jdbc.resultset.Row;
+import hu.gds.jdbc.util.Futures;
 import org.jetbrains.annotations.NotNull;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.SQLWarning;
+import java.util.concurrent.CompletableFuture;
 
 import static java.lang.Math.max;
 
@@ -58,6 +61,21 @@ public class GdsStatement extends GdsBaseStatement {
         return executeInner(sql, false, ConsistencyType.PAGES);
     }
 
+    @Override
+    public CompletableFuture<ResultSet> executeQueryAsync(@NotNull String sql) {
+        return Futures.thenApply(executeInnerAsync(sql, false, ConsistencyType.PAGES), GdsBaseStatement::toQueryResult);
+    }
+
+    @Override
+    public GdsFlow.Publisher<Row> executeQueryPublisher(@NotNull String sql) {
+        return executeQueryPublisherInner(sql, ConsistencyType.PAGES);
+    }
+
+    @Override
+    public CompletableFuture<Integer> executeUpdateAsync(@NotNull String sql) {
+        return Futures.thenApply(executeInnerAsync(sql, true, ConsistencyType.PAGES), GdsBaseStatement::toUpdateCount);
+    }
+
     @Override
     public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
         throw new SQLFeatureNotSupportedException();
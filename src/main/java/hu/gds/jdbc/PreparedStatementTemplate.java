@@ -0,0 +1,210 @@
+package hu.gds.jdbc;
+
+import hu.gds.jdbc.error.InvalidParameterException;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The analysis of a prepared statement made once, with the parameters left in place.
+ * <p>
+ * The {@code ?} markers are numbered ({@code ?1}, {@code ?2}, ...) and the statement goes through the same
+ * parsing and rewriting as the plain statements. The rewritten SQL is then cut at the parameter markers,
+ * so an execution only concatenates the fragments with the bound literals.
+ * <p>
+ * For a single row {@code INSERT ... VALUES (...)} the position of the row is recorded as well, so the bound
+ * statements of a batch can be coalesced into one multi-row INSERT without parsing them again.
+ */
+class PreparedStatementTemplate {
+    private final AnalyzedStatement analyzed;
+    private final int maxRows;
+    //the rewritten SQL cut at the parameter markers, one more than the slots.
+    private final String[] fragments;
+    //the (0-based) index of the parameter rendered after each fragment.
+    private final int[] slotParameters;
+    //the start of the VALUES row and the length of the text after it, -1 if the rows can not be coalesced.
+    private final int valuesRowStart;
+    private final int valuesSuffixLength;
+
+    private PreparedStatementTemplate(AnalyzedStatement analyzed,
+                                      int maxRows,
+                                      String[] fragments,
+                                      int[] slotParameters,
+                                      int valuesRowStart,
+                                      int valuesSuffixLength) {
+        this.analyzed = analyzed;
+        this.maxRows = maxRows;
+        this.fragments = fragments;
+        this.slotParameters = slotParameters;
+        this.valuesRowStart = valuesRowStart;
+        this.valuesSuffixLength = valuesSuffixLength;
+    }
+
+    /**
+     * @return the template, or null if the statement can not be analyzed with its parameters
+     * (the statement has to be analyzed on every execution then), or the lookup missed a primary key.
+     */
+    static PreparedStatementTemplate create(GdsBaseStatement statement,
+                                            String[] templateStrings,
+                                            int maxRows,
+                                            AnalyzedStatement.PrimaryKeyLookup primaryKeys) {
+        StringBuilder numbered = new StringBuilder(templateStrings[0]);
+        for (int i = 1; i < templateStrings.length; i++) {
+            numbered.append('?').append(i).append(templateStrings[i]);
+        }
+        AnalyzedStatement analyzed;
+        try {
+            analyzed = statement.parseAndRewrite(numbered.toString(), primaryKeys);
+        } catch (Throwable ex) {
+            return null;
+        }
+        if (null == analyzed || null != analyzed.attachments) {
+            return null;
+        }
+        List<String> fragments = new ArrayList<>();
+        List<Integer> slotParameters = new ArrayList<>();
+        String sql = analyzed.sql;
+        boolean inString = false;
+        boolean inMetaString = false;
+        int lastSlotEnd = 0;
+        for (int i = 0; i < sql.length(); ++i) {
+            char c = sql.charAt(i);
+            if (c == '\'' && !inMetaString)
+                inString = !inString;
+            if (c == '"' && !inString)
+                inMetaString = !inMetaString;
+            if (c == '?' && !(inString || inMetaString)) {
+                int end = i + 1;
+                while (end < sql.length() && Character.isDigit(sql.charAt(end))) {
+                    end++;
+                }
+                if (end == i + 1) {
+                    return null;
+                }
+                int parameter = Integer.parseInt(sql.substring(i + 1, end)) - 1;
+                if (parameter < 0 || parameter >= templateStrings.length - 1) {
+                    return null;
+                }
+                fragments.add(sql.substring(lastSlotEnd, i));
+                slotParameters.add(parameter);
+                lastSlotEnd = end;
+                i = end - 1;
+            }
+        }
+        fragments.add(sql.substring(lastSlotEnd));
+        /*
+            Only the read-only columns of an INSERT may drop a parameter, if a parameter of a query is lost
+            (for example a LIMIT replaced by the max rows) the rewrite depends on its value.
+         */
+        if (analyzed.dqlFound && !slotParameters.containsAll(allParameters(templateStrings.length - 1))) {
+            return null;
+        }
+        int[] slots = new int[slotParameters.size()];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = slotParameters.get(i);
+        }
+        int valuesRowStart = -1;
+        int valuesSuffixLength = -1;
+        int[] valuesRow = findValuesRow(analyzed);
+        //the text before and after the row has to be the same for every binding.
+        if (null != valuesRow
+                && valuesRow[0] <= fragments.get(0).length()
+                && sql.length() - valuesRow[1] <= fragments.get(fragments.size() - 1).length()) {
+            valuesRowStart = valuesRow[0];
+            valuesSuffixLength = sql.length() - valuesRow[1];
+        }
+        return new PreparedStatementTemplate(analyzed, maxRows, fragments.toArray(new String[0]), slots,
+                valuesRowStart, valuesSuffixLength);
+    }
+
+    /*
+        The row of a single row INSERT is its last parenthesized group on the top level, preceded by VALUES,
+        and followed only by the closing semicolon.
+        Returns the start and end index of the row, or null.
+     */
+    private static int[] findValuesRow(AnalyzedStatement analyzed) {
+        String sql = analyzed.sql;
+        if (!analyzed.dmlFound || analyzed.dqlFound || 1 != analyzed.statementCount
+                || !sql.trim().toUpperCase().startsWith("INSERT")) {
+            return null;
+        }
+        boolean inString = false;
+        boolean inMetaString = false;
+        int depth = 0;
+        int groupStart = -1;
+        int groupEnd = -1;
+        for (int i = 0; i < sql.length(); ++i) {
+            char c = sql.charAt(i);
+            if (c == '\'' && !inMetaString)
+                inString = !inString;
+            if (c == '"' && !inString)
+                inMetaString = !inMetaString;
+            if (inString || inMetaString) {
+                continue;
+            }
+            if (c == '(') {
+                if (0 == depth++) {
+                    groupStart = i;
+                }
+            } else if (c == ')') {
+                if (0 == --depth) {
+                    groupEnd = i + 1;
+                }
+            }
+        }
+        if (0 != depth || groupStart < 0 || groupEnd < groupStart) {
+            return null;
+        }
+        if (!sql.substring(0, groupStart).trim().toUpperCase().endsWith("VALUES")) {
+            return null;
+        }
+        String suffix = sql.substring(groupEnd).trim();
+        if (!suffix.isEmpty() && !";".equals(suffix)) {
+            return null;
+        }
+        return new int[]{groupStart, groupEnd};
+    }
+
+    private static List<Integer> allParameters(int count) {
+        List<Integer> parameters = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            parameters.add(i);
+        }
+        return parameters;
+    }
+
+    int getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * @return true, if the UPDATE of the template was rewritten with the primary keys of its table the lookup returns now
+     */
+    boolean hasCurrentPrimaryKeys(AnalyzedStatement.PrimaryKeyLookup primaryKeys) throws SQLException {
+        return analyzed.hasCurrentPrimaryKeys(primaryKeys);
+    }
+
+    /**
+     * @return the analysis of the statement with the given parameter literals rendered into it.
+     */
+    AnalyzedStatement bind(String[] inStrings) throws InvalidParameterException {
+        for (int i = 0; i < inStrings.length; ++i) {
+            if (inStrings[i] == null)
+                throw new InvalidParameterException("Parameter " + (i + 1) + " is incorrect (null)!");
+        }
+        StringBuilder sql = new StringBuilder(fragments[0]);
+        for (int i = 0; i < slotParameters.length; i++) {
+            int parameter = slotParameters[i];
+            String literal = inStrings[parameter];
+            if ("null".equals(literal) && analyzed.ttlParameters.contains(parameter + 1)) {
+                literal = Long.toString(Long.MAX_VALUE);
+            }
+            sql.append(literal).append(fragments[i + 1]);
+        }
+        if (0 <= valuesRowStart) {
+            return analyzed.withValuesRow(sql.toString(), valuesRowStart, sql.length() - valuesSuffixLength);
+        }
+        return analyzed.withSql(sql.toString());
+    }
+}
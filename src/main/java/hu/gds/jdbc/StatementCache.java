@@ -0,0 +1,96 @@
+package hu.gds.jdbc;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of the analyzed statements of a connection, so the repeated SQL texts are not parsed
+ * and rewritten again.
+ * <p>
+ * The analysis depends on the max rows of the statement (LIMIT rewrite), so it is part of the key.
+ * The analysis of an UPDATE also depends on the primary keys of its table, it is removed on a hit
+ * when they changed or were reloaded as expired.
+ */
+public class StatementCache {
+    public static final int SIZE_DEFAULT = 256;
+
+    private final int maxSize;
+    private final LinkedHashMap<String, AnalyzedStatement> entries;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    StatementCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap<String, AnalyzedStatement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AnalyzedStatement> eldest) {
+                if (size() > StatementCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    static String key(String sql, int maxRows) {
+        return maxRows + ":" + sql;
+    }
+
+    synchronized AnalyzedStatement get(String key) {
+        AnalyzedStatement analyzed = entries.get(key);
+        if (null == analyzed) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return analyzed;
+    }
+
+    synchronized void put(String key, AnalyzedStatement analyzed) {
+        if (0 < maxSize) {
+            entries.put(key, analyzed);
+        }
+    }
+
+    synchronized void remove(String key) {
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "StatementCache{" +
+                "maxSize=" + maxSize +
+                ", size=" + entries.size() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+}
@@ -3,6 +3,7 @@ package hu.gds.jdbc.executor;
 import hu.gds.jdbc.GdsBaseStatement;
 import hu.gds.jdbc.GdsJdbcConnection;
 import hu.gds.jdbc.resultset.DMLResultSet;
+import hu.gds.jdbc.util.Futures;
 
 import java.util.Map;
 
@@ -14,7 +15,7 @@ public class DMLExecutor {
                        GdsJdbcConnection connection,
                        String sql,
                        GdsBaseStatement statement) throws Throwable {
-        result = new DMLResultSet(attachments, onlyAttachmentDML, sql, statement);
+        result = Futures.await(DMLResultSet.executeAsync(attachments, onlyAttachmentDML, sql, statement));
     }
 
     public DMLResultSet getResult() {
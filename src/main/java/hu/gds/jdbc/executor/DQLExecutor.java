@@ -4,6 +4,7 @@ import hu.arheu.gds.message.data.ConsistencyType;
 import hu.gds.jdbc.GdsBaseStatement;
 import hu.gds.jdbc.GdsJdbcConnection;
 import hu.gds.jdbc.resultset.DQLResultSet;
+import hu.gds.jdbc.util.Futures;
 
 import java.util.List;
 
@@ -17,7 +18,7 @@ public class DQLExecutor {
                        List<String> attachmentSelectedFields,
                        GdsBaseStatement statement,
                        ConsistencyType consistencyType) throws Throwable {
-        result = new DQLResultSet(attachmentDQL, sql, tableName, attachmentSelectedFields, statement, consistencyType);
+        result = Futures.await(DQLResultSet.executeAsync(attachmentDQL, sql, tableName, attachmentSelectedFields, statement, consistencyType));
     }
 
     public DQLResultSet getResult() {
@@ -0,0 +1,25 @@
+package hu.gds.jdbc.metainfo;
+
+/**
+ * The attributes of a field of a table stored in {@code @gds.config.store.schema}.
+ */
+public class FieldAttributes {
+    private final boolean searchable;
+    private final String analyzer;
+
+    public FieldAttributes(boolean searchable, String analyzer) {
+        this.searchable = searchable;
+        this.analyzer = analyzer;
+    }
+
+    public boolean isSearchable() {
+        return searchable;
+    }
+
+    /**
+     * @return the analyzer of the field, null if it is not known
+     */
+    public String getAnalyzer() {
+        return analyzer;
+    }
+}
@@ -0,0 +1,688 @@
+package hu.gds.jdbc.metainfo;
+
+import hu.arheu.gds.message.data.FieldHolder;
+import hu.arheu.gds.message.data.FieldValueType;
+import hu.arheu.gds.message.data.impl.FieldHolderImpl;
+import hu.gds.jdbc.GdsAsyncStatement;
+import hu.gds.jdbc.GdsJdbcConnection;
+import hu.gds.jdbc.resultset.GdsResultSetMetaData;
+import hu.gds.jdbc.util.Futures;
+import hu.gds.jdbc.util.GdsConstants;
+import hu.gds.jdbc.util.PrefetchScheduler;
+import org.msgpack.value.Value;
+import org.msgpack.value.impl.ImmutableLongValueImpl;
+import org.msgpack.value.impl.ImmutableNilValueImpl;
+import org.msgpack.value.impl.ImmutableStringValueImpl;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * The schema of the user tables of the GDS as seen by a connection, loaded lazily and reused by the
+ * {@link java.sql.DatabaseMetaData}, the UPDATE rewrite and the result set metadata.
+ * <p>
+ * The table names and their primary keys come from one query of {@code @gds.config.store.tables}, the columns
+ * of a table are only discovered when the table is first asked for. Every entry is reloaded when it gets
+ * older than the TTL ({@code schema.cache.ttl}), or after {@link #invalidate()}.
+ * <p>
+ * When the columns of several tables are asked for at once, the fields of all of them come from one paged scan
+ * of {@code @gds.config.store.schema}, and the order of the columns from {@code LIMIT 0} probes run concurrently,
+ * at most {@code schema.discovery.parallelism} at once. A table whose fields did not change since its last probe
+ * keeps its column order without a new probe.
+ * <p>
+ * The searchable flag and the analyzer of the fields are cached the same way, for the result set metadata.
+ * <p>
+ * The entries live in a {@link SharedSchema}, shared by the connections to the same gate with the same user,
+ * and loaded by whichever connection asks for them first. Its lock is only held to look up and publish the entries,
+ * never across a query, the connections missing the same entry meanwhile wait for the load in flight.
+ */
+public class SchemaCache {
+    public static final long TTL_DEFAULT = 5 * 60 * 1000L;
+    public static final int DISCOVERY_PARALLELISM_DEFAULT = 4;
+
+    static final String TABLE_TYPE = "TABLE";
+    private static final String SELECT_FROM_GDS_CONFIG_STORE_TABLES = "SELECT * FROM \"@gds.config.store.tables\"";
+    private static final String SELECT_FROM_GDS_CONFIG_STORE_SCHEMA = "SELECT * FROM \"@gds.config.store.schema\"";
+    //the keys of the loads in flight
+    private static final String TABLE_NAMES_KEY = "tables";
+    private static final String PRIMARY_KEYS_KEY = "keys:";
+    private static final String TABLE_KEY = "table:";
+    private static final String FIELD_ATTRIBUTES_KEY = "attributes:";
+
+    private final GdsJdbcConnection connection;
+    private final SharedSchema shared;
+    private final long ttl;
+    private final int discoveryParallelism;
+
+    /**
+     * @param shared               the entries shared with the other connections of the same gate and user
+     * @param ttl                  the milliseconds an entry is used for, 0 disables the cache,
+     *                             a negative value never expires the entries
+     * @param discoveryParallelism the number of column order probes in flight at once
+     */
+    public SchemaCache(GdsJdbcConnection connection, SharedSchema shared, long ttl, int discoveryParallelism) {
+        this.connection = connection;
+        this.shared = shared;
+        this.ttl = ttl;
+        this.discoveryParallelism = Math.max(1, discoveryParallelism);
+    }
+
+    /**
+     * Starts the revalidation of the entries loaded from the snapshot, in the background, with this connection.
+     * Called once the connection is ready to send queries.
+     */
+    public void attach() {
+        shared.revalidate(connection);
+    }
+
+    /**
+     * @return the names of the user tables, in their natural order
+     */
+    public List<String> getTableNames() throws SQLException {
+        return load(TABLE_NAMES_KEY, false, () -> shared.tableNames,
+                () -> queryTableListing(connection),
+                listing -> {
+                    shared.applyTableListing(listing);
+                    return shared.tableNames.value;
+                });
+    }
+
+    /**
+     * @return the primary key columns of the table, empty if the table is not known
+     */
+    public List<String> getPrimaryKeys(String tableName) throws SQLException {
+        String name = unquote(tableName);
+        return load(PRIMARY_KEYS_KEY + name, false, () -> shared.primaryKeys.get(name),
+                () -> loadPrimaryKeys(name),
+                keys -> {
+                    shared.primaryKeys.put(name, new SharedSchema.Cached<>(keys));
+                    shared.changed();
+                    return keys;
+                });
+    }
+
+    /**
+     * @return the cached primary key columns of the table, null if they are not cached (or expired)
+     */
+    public List<String> getCachedPrimaryKeys(String tableName) {
+        String name = unquote(tableName);
+        synchronized (shared) {
+            SharedSchema.Cached<List<String>> keys = shared.primaryKeys.get(name);
+            return isExpired(keys) ? null : keys.value;
+        }
+    }
+
+    /**
+     * Same as {@link #getPrimaryKeys(String)}, without waiting for the query loading them.
+     */
+    public CompletableFuture<List<String>> getPrimaryKeysAsync(String tableName) {
+        String name = unquote(tableName);
+        return loadAsync(PRIMARY_KEYS_KEY + name, () -> shared.primaryKeys.get(name),
+                () -> loadPrimaryKeysAsync(name),
+                keys -> {
+                    shared.primaryKeys.put(name, new SharedSchema.Cached<>(keys));
+                    shared.changed();
+                    return keys;
+                });
+    }
+
+    /**
+     * @return the table with its columns, null if the table is not known
+     */
+    public GdsTable getTable(String tableName) throws SQLException {
+        String name = unquote(tableName);
+        synchronized (shared) {
+            SharedSchema.Cached<GdsTable> table = shared.tables.get(name);
+            if (!isExpired(table)) {
+                return table.value;
+            }
+        }
+        if (!getTableNames().contains(name)) {
+            return null;
+        }
+        return load(TABLE_KEY + name, false, () -> shared.tables.get(name),
+                () -> loadTable(name),
+                table -> {
+                    shared.tables.put(name, new SharedSchema.Cached<>(table));
+                    shared.changed();
+                    return table;
+                });
+    }
+
+    /**
+     * @return the attributes of the fields of the table by the field names, empty if the table is not known
+     */
+    public Map<String, FieldAttributes> getFieldAttributes(String tableName) throws SQLException {
+        String name = unquote(tableName);
+        return load(FIELD_ATTRIBUTES_KEY + name, false, () -> shared.fieldAttributes.get(name),
+                () -> loadFieldAttributes(name),
+                attributes -> {
+                    shared.fieldAttributes.put(name, new SharedSchema.Cached<>(attributes));
+                    return attributes;
+                });
+    }
+
+    /**
+     * @return the known tables of the given names with their columns, by their names.
+     * The tables not cached yet are discovered together.
+     */
+    public TreeMap<String, GdsTable> getTables(Collection<String> tableNames) throws SQLException {
+        Set<String> knownTables = new HashSet<>(getTableNames());
+        TreeMap<String, GdsTable> result = new TreeMap<>();
+        List<String> missing = new ArrayList<>();
+        synchronized (shared) {
+            for (String tableName : tableNames) {
+                String name = unquote(tableName);
+                SharedSchema.Cached<GdsTable> table = shared.tables.get(name);
+                if (!isExpired(table)) {
+                    result.put(name, table.value);
+                } else if (knownTables.contains(name)) {
+                    missing.add(name);
+                }
+            }
+        }
+        if (1 == missing.size()) {
+            GdsTable table = getTable(missing.get(0));
+            if (null != table) {
+                result.put(missing.get(0), table);
+            }
+        } else if (!missing.isEmpty()) {
+            result.putAll(discoverShared(missing, false));
+        }
+        return result;
+    }
+
+    /**
+     * Loads the listing of the tables and the columns of every listed table again, replacing only their entries.
+     * The tables whose fields did not change keep their column order, the entries of the other connections
+     * of the same gate and user are left in place until they are replaced.
+     */
+    public void reload() throws SQLException {
+        List<String> tableNames = load(TABLE_NAMES_KEY, true, () -> shared.tableNames,
+                () -> queryTableListing(connection),
+                listing -> {
+                    shared.applyTableListing(listing);
+                    return shared.tableNames.value;
+                });
+        discoverShared(tableNames, true);
+    }
+
+    /**
+     * Drops every entry (of every connection of the same gate and user),
+     * the schema is loaded again when it is next asked for.
+     */
+    public void invalidate() {
+        shared.invalidate();
+    }
+
+    /**
+     * Drops the entries of the table (and the list of the tables, as it may have been created or dropped).
+     */
+    public void invalidate(String tableName) {
+        shared.invalidate(unquote(tableName));
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    private boolean isExpired(SharedSchema.Cached<?> cached) {
+        return null == cached
+                || (0 <= ttl && System.currentTimeMillis() - cached.loadedAt >= ttl);
+    }
+
+    /*
+        The entry is looked up and published under the lock of the shared schema, the GDS is queried without it.
+        Concurrent misses of the same key wait for the load already in flight instead of starting their own.
+        A forced load ignores the cached entry, but still joins the one in flight.
+     */
+    private <L, T> T load(String key,
+                          boolean force,
+                          Supplier<SharedSchema.Cached<T>> lookup,
+                          Loader<L> loader,
+                          Function<L, T> publish) throws SQLException {
+        CompletableFuture<Object> inFlight;
+        CompletableFuture<Object> owned = null;
+        synchronized (shared) {
+            SharedSchema.Cached<T> cached = lookup.get();
+            if (!force && !isExpired(cached)) {
+                return cached.value;
+            }
+            inFlight = shared.loading.get(key);
+            if (null == inFlight) {
+                owned = new CompletableFuture<>();
+                shared.loading.put(key, owned);
+            }
+        }
+        if (null == owned) {
+            return awaitLoad(inFlight);
+        }
+        try {
+            L loaded = loader.load();
+            T value;
+            synchronized (shared) {
+                value = publish.apply(loaded);
+                shared.loading.remove(key, owned);
+            }
+            owned.complete(value);
+            return value;
+        } catch (SQLException | RuntimeException e) {
+            synchronized (shared) {
+                shared.loading.remove(key, owned);
+            }
+            owned.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /*
+        Same as load, the returned future completes when the entry is published.
+        The loader only sends the query, the reply is processed on the prefetch executor.
+     */
+    @SuppressWarnings("unchecked")
+    private <L, T> CompletableFuture<T> loadAsync(String key,
+                                                  Supplier<SharedSchema.Cached<T>> lookup,
+                                                  Supplier<CompletableFuture<L>> loader,
+                                                  Function<L, T> publish) {
+        CompletableFuture<Object> owned = new CompletableFuture<>();
+        synchronized (shared) {
+            SharedSchema.Cached<T> cached = lookup.get();
+            if (!isExpired(cached)) {
+                return CompletableFuture.completedFuture(cached.value);
+            }
+            CompletableFuture<Object> inFlight = shared.loading.get(key);
+            if (null != inFlight) {
+                return inFlight.thenApply(value -> (T) value);
+            }
+            shared.loading.put(key, owned);
+        }
+        loader.get().whenComplete((loaded, cause) -> {
+            Object value = null;
+            Throwable failure = null == cause ? null : Futures.unwrap(cause);
+            synchronized (shared) {
+                if (null == failure) {
+                    try {
+                        value = publish.apply(loaded);
+                    } catch (RuntimeException e) {
+                        failure = e;
+                    }
+                }
+                shared.loading.remove(key, owned);
+            }
+            if (null == failure) {
+                owned.complete(value);
+            } else {
+                owned.completeExceptionally(failure);
+            }
+        });
+        return owned.thenApply(value -> (T) value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T awaitLoad(CompletableFuture<Object> inFlight) throws SQLException {
+        try {
+            return (T) Futures.await(inFlight);
+        } catch (SQLException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new SQLException(t);
+        }
+    }
+
+    /*
+        The tables not in flight are discovered together by this connection, the others are waited for.
+     */
+    private Map<String, GdsTable> discoverShared(Collection<String> tableNames, boolean force) throws SQLException {
+        Map<String, GdsTable> result = new HashMap<>();
+        Map<String, CompletableFuture<Object>> waited = new HashMap<>();
+        Map<String, CompletableFuture<Object>> owned = new HashMap<>();
+        synchronized (shared) {
+            for (String name : tableNames) {
+                SharedSchema.Cached<GdsTable> table = shared.tables.get(name);
+                CompletableFuture<Object> inFlight = shared.loading.get(TABLE_KEY + name);
+                if (!force && !isExpired(table)) {
+                    result.put(name, table.value);
+                } else if (null != inFlight) {
+                    waited.put(name, inFlight);
+                } else {
+                    CompletableFuture<Object> future = new CompletableFuture<>();
+                    shared.loading.put(TABLE_KEY + name, future);
+                    owned.put(name, future);
+                }
+            }
+        }
+        if (!owned.isEmpty()) {
+            Map<String, GdsTable> discovered;
+            try {
+                discovered = discover(new ArrayList<>(owned.keySet()));
+            } catch (SQLException | RuntimeException e) {
+                synchronized (shared) {
+                    for (Map.Entry<String, CompletableFuture<Object>> entry : owned.entrySet()) {
+                        shared.loading.remove(TABLE_KEY + entry.getKey(), entry.getValue());
+                    }
+                }
+                for (CompletableFuture<Object> future : owned.values()) {
+                    future.completeExceptionally(e);
+                }
+                throw e;
+            }
+            synchronized (shared) {
+                for (Map.Entry<String, GdsTable> entry : discovered.entrySet()) {
+                    shared.tables.put(entry.getKey(), new SharedSchema.Cached<>(entry.getValue()));
+                }
+                for (Map.Entry<String, CompletableFuture<Object>> entry : owned.entrySet()) {
+                    shared.loading.remove(TABLE_KEY + entry.getKey(), entry.getValue());
+                }
+                shared.changed();
+            }
+            for (Map.Entry<String, CompletableFuture<Object>> entry : owned.entrySet()) {
+                entry.getValue().complete(discovered.get(entry.getKey()));
+            }
+            result.putAll(discovered);
+        }
+        for (Map.Entry<String, CompletableFuture<Object>> entry : waited.entrySet()) {
+            GdsTable table = awaitLoad(entry.getValue());
+            if (null != table) {
+                result.put(entry.getKey(), table);
+            }
+        }
+        return result;
+    }
+
+    private static String unquote(String tableName) {
+        if (tableName.length() > 1 && tableName.startsWith("\"") && tableName.endsWith("\"")) {
+            return tableName.substring(1, tableName.length() - 1);
+        }
+        return tableName;
+    }
+
+    /*
+        The listing of the tables holds the id field of every table, so the primary keys are cached with it.
+     */
+    static SharedSchema.TableListing queryTableListing(GdsJdbcConnection connection) throws SQLException {
+        SharedSchema.TableListing listing = new SharedSchema.TableListing();
+        try (Statement statement = connection.createStatement()) {
+            ResultSet resultSet = statement.executeQuery(SELECT_FROM_GDS_CONFIG_STORE_TABLES);
+            while (resultSet.next()) {
+                String tableName = resultSet.getString("table_name");
+                String idField = resultSet.getString("id_field");
+                listing.primaryKeys.put(tableName, null == idField
+                        ? Collections.<String>emptyList()
+                        : Collections.singletonList(idField));
+                listing.fields.put(tableName, resultSet.getString("fields"));
+            }
+        }
+        return listing;
+    }
+
+    private List<String> loadPrimaryKeys(String tableName) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            return readPrimaryKeys(statement.executeQuery(createPrimaryKeysQuery(tableName)));
+        }
+    }
+
+    private CompletableFuture<List<String>> loadPrimaryKeysAsync(String tableName) {
+        Statement statement;
+        try {
+            statement = connection.createStatement();
+        } catch (SQLException e) {
+            return Futures.failed(e);
+        }
+        return Futures.thenApplyAsync(((GdsAsyncStatement) statement).executeQueryAsync(createPrimaryKeysQuery(tableName)),
+                        SchemaCache::readPrimaryKeys, PrefetchScheduler.executor())
+                .whenComplete((keys, cause) -> closeQuietly(statement));
+    }
+
+    private static String createPrimaryKeysQuery(String tableName) {
+        return "SELECT * FROM \"@gds.config.store.tables\" WHERE table='" + tableName + "'";
+    }
+
+    private static List<String> readPrimaryKeys(ResultSet resultSet) throws SQLException {
+        List<String> keys = new ArrayList<>();
+        while (resultSet.next()) {
+            keys.add(resultSet.getString("id_field"));
+        }
+        return Collections.unmodifiableList(keys);
+    }
+
+    private Map<String, FieldAttributes> loadFieldAttributes(String tableName) throws SQLException {
+        Map<String, FieldAttributes> attributes = new HashMap<>();
+        try (Statement statement = connection.createStatement()) {
+            String sql = "SELECT * FROM \"@gds.config.store.schema\" WHERE table='" + tableName + "'";
+            ResultSet resultSet = statement.executeQuery(sql);
+            boolean hasAnalyzer = hasColumn(resultSet, GdsConstants.ANALYZER);
+            while (resultSet.next()) {
+                attributes.put(resultSet.getString("field_name"), createFieldAttributes(resultSet, hasAnalyzer));
+            }
+        }
+        return Collections.unmodifiableMap(attributes);
+    }
+
+    /*
+        The field attributes come with the same rows of the schema store, so they are cached as well.
+     */
+    private GdsTable loadTable(String tableName) throws SQLException {
+        Map<String, FieldHolder> fieldHolderMap = new HashMap<>();
+        Map<String, FieldAttributes> attributes = new HashMap<>();
+        try (Statement statement = connection.createStatement()) {
+            String sql = "SELECT * FROM \"@gds.config.store.schema\" WHERE table='" + tableName + "'";
+            ResultSet resultSet = statement.executeQuery(sql);
+            boolean hasAnalyzer = hasColumn(resultSet, GdsConstants.ANALYZER);
+            while (resultSet.next()) {
+                FieldHolder column = createFieldHolder(resultSet);
+                fieldHolderMap.put(column.getFieldName(), column);
+                attributes.put(column.getFieldName(), createFieldAttributes(resultSet, hasAnalyzer));
+            }
+        }
+        synchronized (shared) {
+            shared.fieldAttributes.put(tableName, new SharedSchema.Cached<>(Collections.unmodifiableMap(attributes)));
+        }
+        try (Statement statement = connection.createStatement()) {
+            ResultSet orderedColumnSet = statement.executeQuery(createProbe(tableName));
+            return createTable(tableName, fieldHolderMap, orderedColumnSet.getMetaData());
+        }
+    }
+
+    /*
+        One scan for the fields of every table, the probes only for the tables whose fields changed.
+        The caller publishes the discovered tables.
+     */
+    private Map<String, GdsTable> discover(List<String> tableNames) throws SQLException {
+        Map<String, Map<String, FieldHolder>> schema = loadSchema();
+        Map<String, GdsTable> discovered = new HashMap<>();
+        List<String> probed = new ArrayList<>();
+        synchronized (shared) {
+            for (String tableName : tableNames) {
+                SharedSchema.Cached<GdsTable> previous = shared.tables.get(tableName);
+                if (null != previous && hasFields(previous.value, schema.get(tableName))) {
+                    discovered.put(tableName, previous.value);
+                } else {
+                    probed.add(tableName);
+                }
+            }
+        }
+        discovered.putAll(probe(probed, schema));
+        return discovered;
+    }
+
+    private Map<String, Map<String, FieldHolder>> loadSchema() throws SQLException {
+        Map<String, Map<String, FieldHolder>> schema = new HashMap<>();
+        Map<String, Map<String, FieldAttributes>> attributes = new HashMap<>();
+        try (Statement statement = connection.createStatement()) {
+            ResultSet resultSet = statement.executeQuery(SELECT_FROM_GDS_CONFIG_STORE_SCHEMA);
+            boolean hasAnalyzer = hasColumn(resultSet, GdsConstants.ANALYZER);
+            while (resultSet.next()) {
+                String tableName = resultSet.getString("table");
+                FieldHolder column = createFieldHolder(resultSet);
+                schema.computeIfAbsent(tableName, name -> new HashMap<>())
+                        .put(column.getFieldName(), column);
+                attributes.computeIfAbsent(tableName, name -> new HashMap<>())
+                        .put(column.getFieldName(), createFieldAttributes(resultSet, hasAnalyzer));
+            }
+        }
+        synchronized (shared) {
+            for (Map.Entry<String, Map<String, FieldAttributes>> entry : attributes.entrySet()) {
+                shared.fieldAttributes.put(entry.getKey(), new SharedSchema.Cached<>(Collections.unmodifiableMap(entry.getValue())));
+            }
+        }
+        return schema;
+    }
+
+    private static boolean hasFields(GdsTable table, Map<String, FieldHolder> fields) {
+        if (null == fields || fields.size() != table.getColumns().size()) {
+            return false;
+        }
+        for (ColumnInfo column : table.getColumns().values()) {
+            FieldHolder field = fields.get(column.getColumnName());
+            if (null == field || null == column.getColumn()
+                    || field.getFieldType() != column.getColumn().getFieldType()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+        Every lane sends the next probe when its previous one was answered.
+     */
+    private Map<String, GdsTable> probe(List<String> tableNames, Map<String, Map<String, FieldHolder>> schema) throws SQLException {
+        Map<String, GdsTable> probed = new ConcurrentHashMap<>();
+        AtomicInteger nextTable = new AtomicInteger();
+        CompletableFuture<?>[] lanes = new CompletableFuture<?>[Math.min(discoveryParallelism, tableNames.size())];
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = probeNext(tableNames, nextTable, schema, probed);
+        }
+        try {
+            Futures.await(CompletableFuture.allOf(lanes));
+        } catch (SQLException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new SQLException(t);
+        }
+        return probed;
+    }
+
+    private CompletableFuture<Void> probeNext(List<String> tableNames,
+                                              AtomicInteger nextTable,
+                                              Map<String, Map<String, FieldHolder>> schema,
+                                              Map<String, GdsTable> probed) {
+        int index = nextTable.getAndIncrement();
+        if (index >= tableNames.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String tableName = tableNames.get(index);
+        Statement statement;
+        try {
+            statement = connection.createStatement();
+        } catch (SQLException e) {
+            return Futures.failed(e);
+        }
+        Map<String, FieldHolder> fields = schema.getOrDefault(tableName, Collections.emptyMap());
+        return Futures.thenApply(((GdsAsyncStatement) statement).executeQueryAsync(createProbe(tableName)),
+                        resultSet -> probed.put(tableName, createTable(tableName, fields, resultSet.getMetaData())))
+                .whenComplete((table, cause) -> closeQuietly(statement))
+                .thenCompose(table -> probeNext(tableNames, nextTable, schema, probed));
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private static String createProbe(String tableName) {
+        return String.format("SELECT * FROM %1$s LIMIT 0", tableName);
+    }
+
+    private static boolean hasColumn(ResultSet resultSet, String columnName) throws SQLException {
+        ResultSetMetaData metaData = resultSet.getMetaData();
+        for (int ii = 1; ii <= metaData.getColumnCount(); ++ii) {
+            if (columnName.equals(metaData.getColumnName(ii))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static FieldAttributes createFieldAttributes(ResultSet schemaRow, boolean hasAnalyzer) throws SQLException {
+        return new FieldAttributes(schemaRow.getBoolean("searchable"),
+                hasAnalyzer ? schemaRow.getString(GdsConstants.ANALYZER) : null);
+    }
+
+    private static FieldHolder createFieldHolder(ResultSet schemaRow) throws SQLException {
+        String fieldType = schemaRow.getString("field_type");
+        String columnName = schemaRow.getString("field_name");
+        return new FieldHolderImpl(columnName, FieldValueType.valueOf(fieldType.toUpperCase()), "");
+    }
+
+    private static GdsTable createTable(String tableName,
+                                        Map<String, FieldHolder> fieldHolderMap,
+                                        ResultSetMetaData orderedColumnSetMetaData) throws SQLException {
+        GdsTable table = new GdsTable(tableName, TABLE_TYPE, false);
+        table.setJDBCDescriptor(createTableDescriptor(tableName, TABLE_TYPE));
+        for (int ii = 1; ii <= orderedColumnSetMetaData.getColumnCount(); ++ii) {
+            String columnName = orderedColumnSetMetaData.getColumnName(ii);
+            table.addColumn(createColumn(table, fieldHolderMap.get(columnName), columnName, ii));
+        }
+        return table;
+    }
+
+    public static List<Value> createTableDescriptor(String tableName, String tableType) {
+        return new ArrayList<>(Arrays.asList(
+                ImmutableNilValueImpl.get(), //TABLE_CAT
+                ImmutableNilValueImpl.get(), //TABLE_SCHEM
+                new ImmutableStringValueImpl(tableName), //TABLE_NAME
+                new ImmutableStringValueImpl(tableType), //TABLE_TYPE
+                new ImmutableStringValueImpl(""), //REMARKS
+                ImmutableNilValueImpl.get(), //TYPE_CAT
+                ImmutableNilValueImpl.get(), //TYPE_SCHEM
+                ImmutableNilValueImpl.get(), //TYPE_NAME
+                ImmutableNilValueImpl.get(), //SELF_REFERENCING_COL_NAME
+                ImmutableNilValueImpl.get() //REF_GENERATION
+        ));
+    }
+
+    static ColumnInfo createColumn(GdsTable table, FieldHolder fieldHolderColumn, String columnName, int ordinalPosition) {
+        ColumnInfo columnInfo = new ColumnInfo(fieldHolderColumn, columnName, ordinalPosition);
+        columnInfo.setJDBCDescriptor(Arrays.asList(
+                ImmutableNilValueImpl.get(), //1, TABLE_CAT
+                ImmutableNilValueImpl.get(), //2, TABLE_SCHEM
+                new ImmutableStringValueImpl(table.getTableName()), //3, TABLE_NAME
+                new ImmutableStringValueImpl(columnInfo.getColumnName()), //4, COLUMN_NAME
+                new ImmutableLongValueImpl(columnInfo.getSqlType()), //5, DATA_TYPE
+                new ImmutableStringValueImpl(columnInfo.getColumn().getFieldType().toString()), //6, TYPE_NAME
+                new ImmutableLongValueImpl(GdsResultSetMetaData.ColumnMetaData.getDisplaySize(columnInfo.getColumn().getFieldType())), //7, COLUMN_SIZE
+                ImmutableNilValueImpl.get(), //8, BUFFER_LENGTH, nem tudni lehet-e null?
+                ImmutableNilValueImpl.get(), //9, DECIMAL_DIGITS
+                new ImmutableLongValueImpl(10), //10, NUM_PREC_RADIX
+                new ImmutableLongValueImpl(2), //11, NULLABLE (columnNoNulls - might not allow NULL values, columnNullable - definitely allows NULL values, columnNullableUnknown - nullability unknown)
+                ImmutableNilValueImpl.get(), //12, REMARKS
+                ImmutableNilValueImpl.get(), //13, COLUMN_DEF
+                new ImmutableLongValueImpl(columnInfo.getSqlType()), //14, SQL_DATA_TYPE, számok, lehetne valami?
+                ImmutableNilValueImpl.get(), //15, SQL_DATETIME_SUB, számok, lehetne valami
+                new ImmutableLongValueImpl(0), //16, CHAR_OCTET_LENGTH, lehetne a maximum?
+                new ImmutableLongValueImpl(columnInfo.getOrdinalPosition()), //17, ORDINAL_POSITION
+                new ImmutableStringValueImpl(""), //18, IS_NULLABLE
+                ImmutableNilValueImpl.get(), //19, SCOPE_CATALOG
+                ImmutableNilValueImpl.get(), //20, SCOPE_SCHEMA
+                ImmutableNilValueImpl.get(), //21, SCOPE_TABLE
+                ImmutableNilValueImpl.get(), //22, SOURCE_DATA_TYPE
+                new ImmutableStringValueImpl("NO"), //23, IS_AUTOINCREMENT
+                new ImmutableStringValueImpl("NO") //24, IS_GENERATEDCOLUMN
+        ));
+        return columnInfo;
+    }
+
+    private interface Loader<L> {
+        L load() throws SQLException;
+    }
+}
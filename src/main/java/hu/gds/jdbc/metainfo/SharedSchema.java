@@ -0,0 +1,323 @@
+package hu.gds.jdbc.metainfo;
+
+import hu.arheu.gds.message.data.FieldHolder;
+import hu.arheu.gds.message.data.FieldValueType;
+import hu.arheu.gds.message.data.impl.FieldHolderImpl;
+import hu.gds.jdbc.GdsJdbcConnection;
+import hu.gds.jdbc.util.DeadlineTimer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The schema cache entries shared by every connection of the driver to the same gate with the same user.
+ * <p>
+ * With {@code schema.snapshot.dir} set the entries are written to a snapshot file shortly after they change.
+ * The first connection of a new JVM maps the file and serves the tables, columns and primary keys from it
+ * right away, while the snapshot is revalidated in the background against {@code @gds.config.store.tables}:
+ * the tables dropped since, or whose fields changed, are removed from the cache.
+ */
+public class SharedSchema {
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final long SNAPSHOT_WRITE_DELAY = 1000;
+    private static final int FIELD_ATTRIBUTES_MAX_TABLES = 1024;
+
+    private static final ExecutorService BACKGROUND = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "gds-jdbc-schema");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String key;
+    private final Path snapshotFile;
+
+    Cached<List<String>> tableNames;
+    final Map<String, Cached<List<String>>> primaryKeys = new HashMap<>();
+    final Map<String, Cached<GdsTable>> tables = new HashMap<>();
+    //the least recently used tables are evicted above the limit, they are not part of the snapshot.
+    final Map<String, Cached<Map<String, FieldAttributes>>> fieldAttributes =
+            new LinkedHashMap<String, Cached<Map<String, FieldAttributes>>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Cached<Map<String, FieldAttributes>>> eldest) {
+                    return size() > FIELD_ATTRIBUTES_MAX_TABLES;
+                }
+            };
+    //the loads in flight by their keys, completed with the published value.
+    final Map<String, CompletableFuture<Object>> loading = new HashMap<>();
+    //the fields column of @gds.config.store.tables, it changes with the schema of the table.
+    private final Map<String, String> tableFields = new HashMap<>();
+
+    private boolean revalidationNeeded = false;
+    private boolean snapshotWriteScheduled = false;
+
+    /**
+     * @param key         the gate and the user the entries belong to
+     * @param snapshotDir the directory of the snapshot files, null if the entries are not persisted
+     */
+    public SharedSchema(String key, Path snapshotDir) {
+        this.key = key;
+        this.snapshotFile = null == snapshotDir ? null : snapshotDir.resolve(snapshotFileName(key));
+        loadSnapshot();
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Path getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    private static String snapshotFileName(String key) {
+        return "gds-schema-" + Integer.toHexString(key.hashCode()) + ".snapshot";
+    }
+
+    synchronized void invalidate() {
+        tableNames = null;
+        primaryKeys.clear();
+        tables.clear();
+        fieldAttributes.clear();
+        tableFields.clear();
+        changed();
+    }
+
+    synchronized void invalidate(String tableName) {
+        tableNames = null;
+        primaryKeys.remove(tableName);
+        tables.remove(tableName);
+        fieldAttributes.remove(tableName);
+        tableFields.remove(tableName);
+        changed();
+    }
+
+    /*
+        The tables gone from the listing and the ones whose fields changed are dropped with their columns
+        and field attributes.
+     */
+    synchronized void applyTableListing(TableListing listing) {
+        Set<String> cachedTables = new HashSet<>(tables.keySet());
+        cachedTables.addAll(fieldAttributes.keySet());
+        for (String tableName : cachedTables) {
+            String fields = tableFields.get(tableName);
+            if (!listing.fields.containsKey(tableName)
+                    || (null != fields && !fields.equals(listing.fields.get(tableName)))) {
+                tables.remove(tableName);
+                fieldAttributes.remove(tableName);
+            }
+        }
+        primaryKeys.clear();
+        for (Map.Entry<String, List<String>> entry : listing.primaryKeys.entrySet()) {
+            primaryKeys.put(entry.getKey(), new Cached<>(entry.getValue()));
+        }
+        tableFields.clear();
+        tableFields.putAll(listing.fields);
+        List<String> names = new ArrayList<>(listing.primaryKeys.keySet());
+        Collections.sort(names);
+        tableNames = new Cached<>(Collections.unmodifiableList(names));
+        changed();
+    }
+
+    /**
+     * Revalidates the entries loaded from the snapshot in the background, with the given connection.
+     * Does nothing if they were already revalidated (or nothing was loaded).
+     */
+    synchronized void revalidate(GdsJdbcConnection connection) {
+        if (!revalidationNeeded) {
+            return;
+        }
+        revalidationNeeded = false;
+        BACKGROUND.execute(() -> {
+            try {
+                applyTableListing(SchemaCache.queryTableListing(connection));
+            } catch (SQLException | RuntimeException e) {
+                synchronized (SharedSchema.this) {
+                    //the next connection tries it again
+                    revalidationNeeded = true;
+                }
+            }
+        });
+    }
+
+    /*
+        Called with the lock held after the entries changed, the snapshot is written once the changes settle.
+     */
+    void changed() {
+        if (null == snapshotFile || snapshotWriteScheduled) {
+            return;
+        }
+        snapshotWriteScheduled = true;
+        DeadlineTimer.schedule(() -> BACKGROUND.execute(this::writeSnapshot), SNAPSHOT_WRITE_DELAY);
+    }
+
+    void writeSnapshot() {
+        byte[] snapshot;
+        synchronized (this) {
+            snapshotWriteScheduled = false;
+            try {
+                snapshot = serialize();
+            } catch (IOException e) {
+                return;
+            }
+        }
+        try {
+            Files.createDirectories(snapshotFile.getParent());
+            Path temp = Files.createTempFile(snapshotFile.getParent(), snapshotFile.getFileName().toString(), ".tmp");
+            Files.write(temp, snapshot);
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException ignored) {
+            //the snapshot is only an optimization, the schema is discovered again without it
+        }
+    }
+
+    /*
+        version, key, then for every table of the listing: name, fields, primary keys,
+        and the columns (name, type, ordinal position) if they were discovered.
+     */
+    private byte[] serialize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(SNAPSHOT_VERSION);
+        writeString(out, key);
+        List<String> names = null == tableNames ? Collections.emptyList() : tableNames.value;
+        out.writeInt(names.size());
+        for (String tableName : names) {
+            writeString(out, tableName);
+            writeString(out, tableFields.get(tableName));
+            Cached<List<String>> keys = primaryKeys.get(tableName);
+            List<String> keyList = null == keys ? Collections.emptyList() : keys.value;
+            out.writeInt(keyList.size());
+            for (String keyField : keyList) {
+                writeString(out, keyField);
+            }
+            Cached<GdsTable> table = tables.get(tableName);
+            if (null == table) {
+                out.writeInt(-1);
+                continue;
+            }
+            Collection<ColumnInfo> columns = table.value.getColumnsByOrdinal().values();
+            out.writeInt(columns.size());
+            for (ColumnInfo column : columns) {
+                writeString(out, column.getColumnName());
+                writeString(out, column.getColumn().getFieldType().name());
+                out.writeInt(column.getOrdinalPosition());
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (null == value) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /*
+        The lengths and counts are checked against the bytes left, so a broken or foreign snapshot is rejected
+        instead of allocating by them.
+     */
+    private static String readString(ByteBuffer buffer) throws IOException {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IOException("The snapshot is corrupt, a length of " + length + " exceeds its remaining " + buffer.remaining() + " bytes");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //every entry takes at least the 4 bytes of its length
+    private static int readCount(ByteBuffer buffer) throws IOException {
+        int count = buffer.getInt();
+        if (count > buffer.remaining() / 4) {
+            throw new IOException("The snapshot is corrupt, a count of " + count + " exceeds its remaining " + buffer.remaining() + " bytes");
+        }
+        return count;
+    }
+
+    /*
+        A missing, stale or broken snapshot is ignored, the schema is discovered as without it.
+     */
+    private synchronized void loadSnapshot() {
+        if (null == snapshotFile || !Files.isRegularFile(snapshotFile)) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (SNAPSHOT_VERSION != buffer.getInt() || !key.equals(readString(buffer))) {
+                return;
+            }
+            List<String> names = new ArrayList<>();
+            int tableCount = readCount(buffer);
+            for (int i = 0; i < tableCount; i++) {
+                String tableName = readString(buffer);
+                names.add(tableName);
+                tableFields.put(tableName, readString(buffer));
+                int keyCount = readCount(buffer);
+                List<String> keys = new ArrayList<>(keyCount);
+                for (int j = 0; j < keyCount; j++) {
+                    keys.add(readString(buffer));
+                }
+                primaryKeys.put(tableName, new Cached<>(Collections.unmodifiableList(keys)));
+                int columnCount = readCount(buffer);
+                if (columnCount < 0) {
+                    continue;
+                }
+                GdsTable table = new GdsTable(tableName, SchemaCache.TABLE_TYPE, false);
+                table.setJDBCDescriptor(SchemaCache.createTableDescriptor(tableName, SchemaCache.TABLE_TYPE));
+                for (int j = 0; j < columnCount; j++) {
+                    String columnName = readString(buffer);
+                    FieldHolder field = new FieldHolderImpl(columnName, FieldValueType.valueOf(readString(buffer)), "");
+                    table.addColumn(SchemaCache.createColumn(table, field, columnName, buffer.getInt()));
+                }
+                tables.put(tableName, new Cached<>(table));
+            }
+            tableNames = new Cached<>(Collections.unmodifiableList(names));
+            revalidationNeeded = true;
+        } catch (IOException | RuntimeException e) {
+            tableNames = null;
+            primaryKeys.clear();
+            tables.clear();
+            tableFields.clear();
+        }
+    }
+
+    static class Cached<T> {
+        final T value;
+        final long loadedAt;
+
+        Cached(T value) {
+            this.value = value;
+            this.loadedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * The rows of {@code @gds.config.store.tables}.
+     */
+    static class TableListing {
+        final Map<String, List<String>> primaryKeys = new HashMap<>();
+        final Map<String, String> fields = new HashMap<>();
+    }
+}
@@ -0,0 +1,328 @@
+package hu.gds.jdbc.pool;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The pool of the connections of one user of a {@link GdsDataSource}.
+ * <p>
+ * The idle connections are handed out in LIFO order, so the connections above the load become idle long enough
+ * to be evicted. A connection idle for longer than the validation interval is checked with a round trip
+ * before it is handed out, it is dropped if the check fails or takes longer than the slow threshold.
+ */
+class GdsConnectionPool implements ConnectionEventListener {
+    static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "gds-jdbc-pool");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final GdsDataSource dataSource;
+    private final String user;
+    private final String password;
+    private final int maxPoolSize;
+    private final int minIdle;
+    private final long idleTimeout;
+    private final long validationInterval;
+    private final long validationTimeout;
+    private final long slowThreshold;
+
+    private final Deque<GdsPooledConnection> idle = new ArrayDeque<>();
+    private final Set<GdsPooledConnection> all = new HashSet<>();
+    private int pending = 0;
+    private int waiting = 0;
+    private boolean closed = false;
+
+    private long created = 0;
+    private long destroyed = 0;
+    private long borrows = 0;
+    private long borrowNanos = 0;
+    private long borrowTimeouts = 0;
+    private long validationFailures = 0;
+    private long idleEvictions = 0;
+    private long slowEvictions = 0;
+
+    GdsConnectionPool(GdsDataSource dataSource, String user, String password) {
+        this.dataSource = dataSource;
+        this.user = user;
+        this.password = password;
+        this.maxPoolSize = Math.max(1, dataSource.getMaxPoolSize());
+        this.minIdle = Math.max(0, Math.min(dataSource.getMinIdle(), maxPoolSize));
+        this.idleTimeout = dataSource.getIdleTimeout();
+        this.validationInterval = dataSource.getValidationInterval();
+        this.validationTimeout = dataSource.getValidationTimeout();
+        this.slowThreshold = dataSource.getSlowThreshold();
+    }
+
+    /**
+     * Hands out an idle connection, or opens a new one if the pool is not full.
+     * Waits at most the given milliseconds for a connection to be returned otherwise.
+     */
+    Connection borrow(long timeoutMillis) throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + timeoutMillis * 1_000_000L;
+        while (true) {
+            GdsPooledConnection pooled;
+            synchronized (this) {
+                checkClosed();
+                while (idle.isEmpty() && all.size() + pending >= maxPoolSize) {
+                    long remaining = (deadline - System.nanoTime()) / 1_000_000L;
+                    if (remaining <= 0) {
+                        borrowTimeouts++;
+                        throw new SQLTimeoutException("No connection became available in " + timeoutMillis + " ms");
+                    }
+                    waiting++;
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a connection", e);
+                    } finally {
+                        waiting--;
+                    }
+                    checkClosed();
+                }
+                pooled = idle.pollFirst();
+                if (null == pooled) {
+                    pending++;
+                }
+            }
+            if (null == pooled) {
+                pooled = open();
+            } else if (!validate(pooled)) {
+                destroy(pooled);
+                continue;
+            }
+            try {
+                Connection connection = pooled.getConnection();
+                synchronized (this) {
+                    borrows++;
+                    borrowNanos += System.nanoTime() - start;
+                }
+                return connection;
+            } catch (SQLException e) {
+                destroy(pooled);
+            }
+        }
+    }
+
+    /*
+        Opens a connection counted as pending by the caller, the connection is counted as part of the pool
+        (but not idle) once it is open.
+     */
+    private GdsPooledConnection open() throws SQLException {
+        GdsPooledConnection pooled;
+        try {
+            pooled = new GdsPooledConnection(dataSource.openPhysicalConnection(user, password));
+        } catch (SQLException | RuntimeException e) {
+            synchronized (this) {
+                pending--;
+                notifyAll();
+            }
+            throw e;
+        }
+        pooled.addConnectionEventListener(this);
+        synchronized (this) {
+            pending--;
+            if (!closed) {
+                all.add(pooled);
+                created++;
+                return pooled;
+            }
+            notifyAll();
+        }
+        closeQuietly(pooled);
+        throw new SQLException("The pool is closed");
+    }
+
+    /*
+        A connection used (or validated) recently is trusted, the others are checked with a round trip.
+     */
+    private boolean validate(GdsPooledConnection pooled) {
+        long now = System.currentTimeMillis();
+        if (now - pooled.lastUsedAt < validationInterval) {
+            return true;
+        }
+        boolean valid;
+        try {
+            valid = pooled.getPhysicalConnection().isValid((int) Math.max(1, (validationTimeout + 999) / 1000));
+        } catch (SQLException e) {
+            valid = false;
+        }
+        long elapsed = System.currentTimeMillis() - now;
+        synchronized (this) {
+            if (!valid) {
+                validationFailures++;
+                return false;
+            }
+            if (elapsed > slowThreshold) {
+                slowEvictions++;
+                return false;
+            }
+        }
+        pooled.lastUsedAt = System.currentTimeMillis();
+        return true;
+    }
+
+    /**
+     * Opens connections in parallel until the pool has the minimum number of idle connections.
+     *
+     * @return the future completed once the connections are opened (or failed to)
+     */
+    CompletableFuture<Void> prewarm() {
+        int needed;
+        synchronized (this) {
+            if (closed) {
+                return CompletableFuture.completedFuture(null);
+            }
+            needed = Math.min(minIdle - idle.size() - pending, maxPoolSize - all.size() - pending);
+            if (needed <= 0) {
+                return CompletableFuture.completedFuture(null);
+            }
+            pending += needed;
+        }
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[needed];
+        for (int i = 0; i < needed; i++) {
+            futures[i] = CompletableFuture.runAsync(() -> {
+                try {
+                    GdsPooledConnection pooled = open();
+                    synchronized (this) {
+                        idle.addFirst(pooled);
+                        notifyAll();
+                    }
+                } catch (SQLException | RuntimeException ignored) {
+                    //the pool is warmed up again by the next housekeeping
+                }
+            }, EXECUTOR);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * Closes the connections idle for longer than the idle timeout, above the minimum number of idle connections.
+     */
+    void evictIdle() {
+        List<GdsPooledConnection> evicted = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            Iterator<GdsPooledConnection> oldestFirst = idle.descendingIterator();
+            while (oldestFirst.hasNext() && idle.size() > minIdle) {
+                GdsPooledConnection pooled = oldestFirst.next();
+                if (now - pooled.lastUsedAt <= idleTimeout) {
+                    break;
+                }
+                oldestFirst.remove();
+                all.remove(pooled);
+                destroyed++;
+                idleEvictions++;
+                evicted.add(pooled);
+            }
+            if (!evicted.isEmpty()) {
+                notifyAll();
+            }
+        }
+        for (GdsPooledConnection pooled : evicted) {
+            closeQuietly(pooled);
+        }
+    }
+
+    @Override
+    public void connectionClosed(ConnectionEvent event) {
+        GdsPooledConnection pooled = (GdsPooledConnection) event.getSource();
+        synchronized (this) {
+            if (!closed && all.contains(pooled) && !pooled.getPhysicalConnection().isClosed()) {
+                idle.addFirst(pooled);
+                notifyAll();
+                return;
+            }
+        }
+        destroy(pooled);
+    }
+
+    @Override
+    public void connectionErrorOccurred(ConnectionEvent event) {
+        destroy((GdsPooledConnection) event.getSource());
+    }
+
+    private void destroy(GdsPooledConnection pooled) {
+        synchronized (this) {
+            if (all.remove(pooled)) {
+                destroyed++;
+            }
+            idle.remove(pooled);
+            notifyAll();
+        }
+        closeQuietly(pooled);
+    }
+
+    /**
+     * Closes the idle connections in parallel, the ones in use are closed when they are returned.
+     * Each close is bounded by the network timeout of the connection.
+     */
+    void close() {
+        List<GdsPooledConnection> toClose;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            all.removeAll(idle);
+            destroyed += idle.size();
+            idle.clear();
+            notifyAll();
+        }
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[toClose.size()];
+        for (int i = 0; i < futures.length; i++) {
+            GdsPooledConnection pooled = toClose.get(i);
+            futures[i] = CompletableFuture.runAsync(() -> closeQuietly(pooled), EXECUTOR);
+        }
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (CompletionException ignored) {
+        }
+    }
+
+    synchronized PoolStatistics getStatistics() {
+        return new PoolStatistics(
+                user,
+                maxPoolSize,
+                all.size(),
+                idle.size(),
+                pending,
+                waiting,
+                created,
+                destroyed,
+                borrows,
+                borrowTimeouts,
+                validationFailures,
+                idleEvictions,
+                slowEvictions,
+                borrows == 0 ? 0 : borrowNanos / borrows / 1000);
+    }
+
+    String getUser() {
+        return user;
+    }
+
+    private void checkClosed() throws SQLException {
+        if (closed) {
+            throw new SQLException("The pool is closed");
+        }
+    }
+
+    private static void closeQuietly(GdsPooledConnection pooled) {
+        try {
+            pooled.close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package hu.gds.jdbc.pool;
+
+import hu.gds.jdbc.DriverPropertyInfoHelper;
+import hu.gds.jdbc.GdsJdbcConnection;
+import hu.gds.jdbc.GdsJdbcDriver;
+import hu.gds.jdbc.util.DeadlineTimer;
+import io.netty.util.Timeout;
+
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.DataSource;
+import javax.sql.PooledConnection;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * A {@link DataSource} with a built-in connection pool, keeping a separate pool for every user.
+ * <p>
+ * The pool settings are read when the pool of a user is created, so they should be set before the first
+ * connection is requested. As a {@link ConnectionPoolDataSource} it hands out the physical connections
+ * without pooling them, so that an external pool can manage them.
+ */
+public class GdsDataSource implements DataSource, ConnectionPoolDataSource, AutoCloseable {
+    private static final long HOUSEKEEPING_INTERVAL = 30_000;
+    private static final GdsJdbcDriver DRIVER = new GdsJdbcDriver();
+
+    private final Map<String, GdsConnectionPool> pools = new ConcurrentHashMap<>();
+
+    private String url;
+    private String user;
+    private String password;
+    private Properties properties = new Properties();
+    private int maxPoolSize = 10;
+    private int minIdle = 2;
+    private long idleTimeout = 600_000;
+    private long validationInterval = 1000;
+    private long validationTimeout = 5000;
+    private long slowThreshold = 2000;
+    private int loginTimeout = 30;
+    private PrintWriter logWriter;
+
+    private Timeout housekeeping;
+    private boolean closed = false;
+
+    public GdsDataSource() {
+    }
+
+    public GdsDataSource(String url) {
+        this.url = url;
+    }
+
+    /**
+     * @return a connection of the pool of the default user
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getConnection(user, password);
+    }
+
+    /**
+     * @return a connection of the pool of the given user, waiting at most the login timeout for one to become free
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getPool(username, password).borrow(loginTimeout <= 0 ? Long.MAX_VALUE / 2_000_000L : loginTimeout * 1000L);
+    }
+
+    /**
+     * Opens the minimum number of idle connections of the default user in parallel, and waits for them.
+     */
+    public void prewarm() throws SQLException {
+        prewarm(user, password);
+    }
+
+    /**
+     * Opens the minimum number of idle connections of the given user in parallel, and waits for them.
+     */
+    public void prewarm(String username, String password) throws SQLException {
+        CompletableFuture<Void> prewarm = getPool(username, password).prewarm();
+        try {
+            prewarm.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while the pool was warmed up", e);
+        } catch (Exception e) {
+            throw new SQLException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * A physical connection of the default user, not managed by the pool of this data source.
+     */
+    @Override
+    public PooledConnection getPooledConnection() throws SQLException {
+        return getPooledConnection(user, password);
+    }
+
+    /**
+     * A physical connection of the given user, not managed by the pool of this data source.
+     */
+    @Override
+    public PooledConnection getPooledConnection(String username, String password) throws SQLException {
+        return new GdsPooledConnection(openPhysicalConnection(username, password));
+    }
+
+    /**
+     * @return the statistics of the pools of every user
+     */
+    public List<PoolStatistics> getPoolStatistics() {
+        List<PoolStatistics> statistics = new ArrayList<>();
+        for (GdsConnectionPool pool : pools.values()) {
+            statistics.add(pool.getStatistics());
+        }
+        return statistics;
+    }
+
+    /**
+     * @return the statistics of the pools of the given user
+     */
+    public List<PoolStatistics> getPoolStatistics(String username) {
+        List<PoolStatistics> statistics = new ArrayList<>();
+        for (GdsConnectionPool pool : pools.values()) {
+            if (null == username ? null == pool.getUser() : username.equals(pool.getUser())) {
+                statistics.add(pool.getStatistics());
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * Closes the idle connections of the pools, the connections in use are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (null != housekeeping) {
+                housekeeping.cancel();
+                housekeeping = null;
+            }
+        }
+        for (GdsConnectionPool pool : pools.values()) {
+            pool.close();
+        }
+        pools.clear();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private GdsConnectionPool getPool(String username, String password) throws SQLException {
+        synchronized (this) {
+            if (closed) {
+                throw new SQLException("The data source is closed");
+            }
+            if (null == housekeeping) {
+                scheduleHousekeeping();
+            }
+        }
+        //the password is part of the key, so a wrong password can not borrow the connections of the user.
+        String key = username + "\u0000" + password;
+        GdsConnectionPool pool = pools.get(key);
+        if (null == pool) {
+            GdsConnectionPool created = new GdsConnectionPool(this, username, password);
+            pool = pools.putIfAbsent(key, created);
+            if (null == pool) {
+                pool = created;
+                pool.prewarm();
+            }
+        }
+        return pool;
+    }
+
+    /*
+        Runs on the pool threads, so a slow close or open does not hold up the timer.
+     */
+    private void scheduleHousekeeping() {
+        housekeeping = DeadlineTimer.schedule(() -> GdsConnectionPool.EXECUTOR.execute(() -> {
+            for (GdsConnectionPool pool : pools.values()) {
+                pool.evictIdle();
+                pool.prewarm();
+            }
+            synchronized (this) {
+                if (!closed) {
+                    scheduleHousekeeping();
+                }
+            }
+        }), HOUSEKEEPING_INTERVAL);
+    }
+
+    GdsJdbcConnection openPhysicalConnection(String username, String password) throws SQLException {
+        if (null == url) {
+            throw new SQLException("The url of the data source is not set");
+        }
+        Properties info = new Properties();
+        info.putAll(properties);
+        if (null != username) {
+            info.setProperty(DriverPropertyInfoHelper.USER, username);
+        }
+        if (null != password) {
+            info.setProperty(DriverPropertyInfoHelper.PASSWORD, password);
+        }
+        Connection connection = DRIVER.connect(url, info);
+        if (null == connection) {
+            throw new SQLException("Not a GDS url: " + url);
+        }
+        return (GdsJdbcConnection) connection;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public Properties getProperties() {
+        return properties;
+    }
+
+    /**
+     * @param properties the connection properties passed to the driver, see {@link DriverPropertyInfoHelper}
+     */
+    public void setProperties(Properties properties) {
+        this.properties = null == properties ? new Properties() : properties;
+    }
+
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * @param maxPoolSize the maximum number of connections of a user, idle and in use together
+     */
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    /**
+     * @param minIdle the number of idle connections of a user opened in advance and kept open
+     */
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * @param idleTimeout the milliseconds after an idle connection above the minimum is closed
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public long getValidationInterval() {
+        return validationInterval;
+    }
+
+    /**
+     * @param validationInterval the milliseconds a connection is handed out without validation after its last use
+     */
+    public void setValidationInterval(long validationInterval) {
+        this.validationInterval = validationInterval;
+    }
+
+    public long getValidationTimeout() {
+        return validationTimeout;
+    }
+
+    /**
+     * @param validationTimeout the milliseconds the validation of a connection may take
+     */
+    public void setValidationTimeout(long validationTimeout) {
+        this.validationTimeout = validationTimeout;
+    }
+
+    public long getSlowThreshold() {
+        return slowThreshold;
+    }
+
+    /**
+     * @param slowThreshold the milliseconds above a validation round trip evicts the connection as slow
+     */
+    public void setSlowThreshold(long slowThreshold) {
+        this.slowThreshold = slowThreshold;
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    /**
+     * @param seconds the seconds {@link #getConnection()} waits for a connection, 0 waits without a limit
+     */
+    @Override
+    public void setLoginTimeout(int seconds) {
+        this.loginTimeout = seconds;
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return loginTimeout;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        throw new SQLException("Not a wrapper of " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+}
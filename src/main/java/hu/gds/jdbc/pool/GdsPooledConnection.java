@@ -0,0 +1,315 @@
+package hu.gds.jdbc.pool;
+
+import hu.gds.jdbc.GdsJdbcConnection;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.PooledConnection;
+import javax.sql.StatementEventListener;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A physical GDS connection handed out by the pool (or by an external pool through
+ * {@link javax.sql.ConnectionPoolDataSource}).
+ * <p>
+ * {@link #getConnection()} returns a logical handle, closing the handle returns the physical connection to its
+ * pool by notifying the {@link ConnectionEventListener}s. An error of the handle on a lost connection is reported
+ * as {@link ConnectionEventListener#connectionErrorOccurred(ConnectionEvent)}, so the pool drops it.
+ * <p>
+ * The statements and result sets created through a handle are wrapped, so their {@code getConnection()} and
+ * {@code getStatement()} return the handle and its statements, not the physical ones. Closing the handle closes
+ * the statements and result sets left open, and resets the auto-commit, read-only, client info and network
+ * timeout of the physical connection to their values when it was opened.
+ */
+public class GdsPooledConnection implements PooledConnection {
+    private final GdsJdbcConnection physical;
+    private final List<ConnectionEventListener> connectionEventListeners = new CopyOnWriteArrayList<>();
+    private final List<StatementEventListener> statementEventListeners = new CopyOnWriteArrayList<>();
+    private Handle handle;
+    private boolean closed = false;
+
+    //the bookkeeping of the pool.
+    final long createdAt = System.currentTimeMillis();
+    volatile long lastUsedAt = createdAt;
+
+    //the state of the physical connection when it was opened, restored when a handle is closed.
+    private final boolean initialAutoCommit;
+    private final boolean initialReadOnly;
+    private final Properties initialClientInfo;
+    private final int initialNetworkTimeout;
+
+    public GdsPooledConnection(GdsJdbcConnection physical) throws SQLException {
+        this.physical = physical;
+        this.initialAutoCommit = physical.getAutoCommit();
+        this.initialReadOnly = physical.isReadOnly();
+        this.initialClientInfo = new Properties();
+        this.initialClientInfo.putAll(physical.getClientInfo());
+        this.initialNetworkTimeout = physical.getNetworkTimeout();
+    }
+
+    /**
+     * @return a new logical handle of the connection, the previous handle (if any) is closed
+     */
+    @Override
+    public synchronized Connection getConnection() throws SQLException {
+        if (closed || physical.isClosed()) {
+            throw new SQLException("The pooled connection is closed");
+        }
+        if (null != handle) {
+            handle.closed = true;
+            handle.closeStatements();
+        }
+        handle = new Handle();
+        handle.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, handle);
+        return handle.proxy;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (null != handle) {
+                handle.closed = true;
+                handle.closeStatements();
+                handle = null;
+            }
+        }
+        physical.close();
+    }
+
+    /**
+     * @return the physical connection
+     */
+    public GdsJdbcConnection getPhysicalConnection() {
+        return physical;
+    }
+
+    @Override
+    public void addConnectionEventListener(ConnectionEventListener listener) {
+        connectionEventListeners.add(listener);
+    }
+
+    @Override
+    public void removeConnectionEventListener(ConnectionEventListener listener) {
+        connectionEventListeners.remove(listener);
+    }
+
+    @Override
+    public void addStatementEventListener(StatementEventListener listener) {
+        statementEventListeners.add(listener);
+    }
+
+    @Override
+    public void removeStatementEventListener(StatementEventListener listener) {
+        statementEventListeners.remove(listener);
+    }
+
+    private void handleClosed(Handle closedHandle) {
+        synchronized (this) {
+            if (handle != closedHandle) {
+                return;
+            }
+            handle = null;
+        }
+        closedHandle.closeStatements();
+        try {
+            resetState();
+        } catch (SQLException e) {
+            errorOccurred(e);
+            return;
+        }
+        lastUsedAt = System.currentTimeMillis();
+        ConnectionEvent event = new ConnectionEvent(this);
+        for (ConnectionEventListener listener : connectionEventListeners) {
+            listener.connectionClosed(event);
+        }
+    }
+
+    /*
+        The next user of the connection gets it in the state it was opened in.
+     */
+    private void resetState() throws SQLException {
+        if (physical.isClosed()) {
+            return;
+        }
+        physical.setAutoCommit(initialAutoCommit);
+        physical.setReadOnly(initialReadOnly);
+        Properties clientInfo = physical.getClientInfo();
+        if (!initialClientInfo.equals(clientInfo)) {
+            clientInfo.clear();
+            clientInfo.putAll(initialClientInfo);
+        }
+        physical.setNetworkTimeout(Runnable::run, initialNetworkTimeout);
+    }
+
+    private void errorOccurred(SQLException cause) {
+        ConnectionEvent event = new ConnectionEvent(this, cause);
+        for (ConnectionEventListener listener : connectionEventListeners) {
+            listener.connectionErrorOccurred(event);
+        }
+    }
+
+    /*
+        Every interface of the class, so the wrapper can be cast to the driver specific ones as well.
+     */
+    private static Class<?>[] interfacesOf(Object target) {
+        Set<Class<?>> interfaces = new LinkedHashSet<>();
+        for (Class<?> type = target.getClass(); null != type; type = type.getSuperclass()) {
+            interfaces.addAll(Arrays.asList(type.getInterfaces()));
+        }
+        return interfaces.toArray(new Class<?>[0]);
+    }
+
+    private class Handle implements InvocationHandler {
+        private volatile boolean closed = false;
+        private Connection proxy;
+        //the statements created through the handle and not closed yet, by their physical statement.
+        private final Map<Statement, Object> statements = new IdentityHashMap<>();
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        handleClosed(this);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "GdsPooledConnection.Handle{closed=" + closed + "}";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("The connection handle is closed");
+            }
+            Object result = invokePhysical(physical, method, args);
+            if (result instanceof Statement) {
+                return wrapStatement((Statement) result);
+            }
+            return result;
+        }
+
+        private Object invokePhysical(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof SQLException && physical.getGdsConnection().isDisconnected()) {
+                    errorOccurred((SQLException) cause);
+                }
+                throw cause;
+            }
+        }
+
+        private Object wrapStatement(Statement statement) {
+            StatementHandle statementHandle = new StatementHandle(this, statement);
+            Object wrapper = Proxy.newProxyInstance(statement.getClass().getClassLoader(),
+                    interfacesOf(statement), statementHandle);
+            statementHandle.proxy = (Statement) wrapper;
+            synchronized (statements) {
+                statements.put(statement, wrapper);
+            }
+            return wrapper;
+        }
+
+        private void statementClosed(Statement statement) {
+            synchronized (statements) {
+                statements.remove(statement);
+            }
+        }
+
+        /*
+            Closing a statement closes its result sets as well.
+         */
+        private void closeStatements() {
+            List<Statement> open;
+            synchronized (statements) {
+                open = new ArrayList<>(statements.keySet());
+                statements.clear();
+            }
+            for (Statement statement : open) {
+                try {
+                    statement.close();
+                } catch (SQLException ignored) {
+                }
+            }
+        }
+    }
+
+    /*
+        The statement created through a handle, its connection is the handle.
+     */
+    private class StatementHandle implements InvocationHandler {
+        private final Handle handle;
+        private final Statement statement;
+        private Statement proxy;
+
+        private StatementHandle(Handle handle, Statement statement) {
+            this.handle = handle;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getConnection":
+                    if (handle.closed) {
+                        throw new SQLException("The connection handle is closed");
+                    }
+                    return handle.proxy;
+                case "close":
+                    handle.statementClosed(statement);
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "GdsPooledConnection.StatementHandle{" + statement + "}";
+                default:
+                    break;
+            }
+            Object result = handle.invokePhysical(statement, method, args);
+            if (result instanceof ResultSet) {
+                return wrapResultSet((ResultSet) result);
+            }
+            return result;
+        }
+
+        private Object wrapResultSet(ResultSet resultSet) {
+            return Proxy.newProxyInstance(resultSet.getClass().getClassLoader(), interfacesOf(resultSet),
+                    (resultSetProxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "getStatement":
+                                return proxy;
+                            case "equals":
+                                return resultSetProxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(resultSetProxy);
+                            default:
+                                return handle.invokePhysical(resultSet, method, args);
+                        }
+                    });
+        }
+    }
+}
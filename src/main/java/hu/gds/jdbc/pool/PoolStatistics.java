@@ -0,0 +1,137 @@
+package hu.gds.jdbc.pool;
+
+/**
+ * A snapshot of the state and the counters of the pool of a user.
+ */
+public class PoolStatistics {
+    private final String user;
+    private final int maximumPoolSize;
+    private final int totalConnections;
+    private final int idleConnections;
+    private final int pendingConnections;
+    private final int waitingThreads;
+    private final long createdConnections;
+    private final long destroyedConnections;
+    private final long borrows;
+    private final long borrowTimeouts;
+    private final long validationFailures;
+    private final long idleEvictions;
+    private final long slowEvictions;
+    private final long averageBorrowMicros;
+
+    PoolStatistics(String user,
+                   int maximumPoolSize,
+                   int totalConnections,
+                   int idleConnections,
+                   int pendingConnections,
+                   int waitingThreads,
+                   long createdConnections,
+                   long destroyedConnections,
+                   long borrows,
+                   long borrowTimeouts,
+                   long validationFailures,
+                   long idleEvictions,
+                   long slowEvictions,
+                   long averageBorrowMicros) {
+        this.user = user;
+        this.maximumPoolSize = maximumPoolSize;
+        this.totalConnections = totalConnections;
+        this.idleConnections = idleConnections;
+        this.pendingConnections = pendingConnections;
+        this.waitingThreads = waitingThreads;
+        this.createdConnections = createdConnections;
+        this.destroyedConnections = destroyedConnections;
+        this.borrows = borrows;
+        this.borrowTimeouts = borrowTimeouts;
+        this.validationFailures = validationFailures;
+        this.idleEvictions = idleEvictions;
+        this.slowEvictions = slowEvictions;
+        this.averageBorrowMicros = averageBorrowMicros;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public int getMaximumPoolSize() {
+        return maximumPoolSize;
+    }
+
+    public int getTotalConnections() {
+        return totalConnections;
+    }
+
+    public int getIdleConnections() {
+        return idleConnections;
+    }
+
+    public int getActiveConnections() {
+        return totalConnections - idleConnections;
+    }
+
+    /**
+     * @return the number of connections being opened
+     */
+    public int getPendingConnections() {
+        return pendingConnections;
+    }
+
+    public int getWaitingThreads() {
+        return waitingThreads;
+    }
+
+    public long getCreatedConnections() {
+        return createdConnections;
+    }
+
+    public long getDestroyedConnections() {
+        return destroyedConnections;
+    }
+
+    public long getBorrows() {
+        return borrows;
+    }
+
+    public long getBorrowTimeouts() {
+        return borrowTimeouts;
+    }
+
+    public long getValidationFailures() {
+        return validationFailures;
+    }
+
+    public long getIdleEvictions() {
+        return idleEvictions;
+    }
+
+    public long getSlowEvictions() {
+        return slowEvictions;
+    }
+
+    /**
+     * @return the average time a borrow took, including the wait, the validation and the opening of the connection
+     */
+    public long getAverageBorrowMicros() {
+        return averageBorrowMicros;
+    }
+
+    @Override
+    public String toString() {
+        return "PoolStatistics{" +
+                "user='" + user + '\'' +
+                ", maximumPoolSize=" + maximumPoolSize +
+                ", totalConnections=" + totalConnections +
+                ", idleConnections=" + idleConnections +
+                ", pendingConnections=" + pendingConnections +
+                ", waitingThreads=" + waitingThreads +
+                ", createdConnections=" + createdConnections +
+                ", destroyedConnections=" + destroyedConnections +
+                ", borrows=" + borrows +
+                ", borrowTimeouts=" + borrowTimeouts +
+                ", validationFailures=" + validationFailures +
+                ", idleEvictions=" + idleEvictions +
+                ", slowEvictions=" + slowEvictions +
+                ", averageBorrowMicros=" + averageBorrowMicros +
+                '}';
+    }
+}
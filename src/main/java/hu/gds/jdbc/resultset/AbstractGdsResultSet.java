@@ -111,7 +111,7 @@ public abstract class AbstractGdsResultSet implements ResultSet {
         activeStream = closeable;
     }
 
-    long longValueFromString(String value, String identifier, long defaultValue) {
+    static long longValueFromString(String value, String identifier, long defaultValue) {
         if (value == null || "".equals(value.trim())) {
             return defaultValue;
         } else {
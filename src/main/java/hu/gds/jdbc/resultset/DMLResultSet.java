@@ -7,13 +7,19 @@ import hu.gds.jdbc.AttachmentInsertConverter;
 import hu.gds.jdbc.DriverPropertyInfoHelper;
 import hu.gds.jdbc.GdsBaseStatement;
 import hu.gds.jdbc.GdsConnection;
+import hu.gds.jdbc.GdsJdbcConnection;
 import hu.gds.jdbc.error.ClosedResultSetException;
 import hu.gds.jdbc.error.GdsException;
 import hu.gds.jdbc.error.InvalidParameterException;
+import hu.gds.jdbc.util.ExecutionDeadline;
+import hu.gds.jdbc.util.Futures;
+import hu.gds.jdbc.util.PrefetchScheduler;
 import org.msgpack.value.Value;
 
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class DMLResultSet extends AbstractGdsResultSet {
     private final String queryId;
@@ -33,20 +39,61 @@ public class DMLResultSet extends AbstractGdsResultSet {
 
     private ResultSetWrapper currentResultSetWrapper;
     private DMLResultSet currentResultSet;
+    //the update count of every statement of the event, in the order of the statements.
+    private int[] updateCounts;
+    //1 or EXECUTE_FAILED for every record of every statement, in the order of the acknowledgement.
+    private int[] recordUpdateCounts;
 
-    public DMLResultSet(Map<String, byte[]> attachments,
-                        boolean onlyAttachmentDML,
-                        String sql,
-                        GdsBaseStatement statement) throws Throwable {
+    /**
+     * Sends the event (or the orphan attachment insert) to the GDS without waiting for the reply.
+     *
+     * @return the future of the result set, completed when the acknowledgement arrived.
+     */
+    public static CompletableFuture<DMLResultSet> executeAsync(Map<String, byte[]> attachments,
+                                                              boolean onlyAttachmentDML,
+                                                              String sql,
+                                                              GdsBaseStatement statement) {
+        return executeAsync(attachments, onlyAttachmentDML, sql, statement, ExecutionDeadline.none());
+    }
+
+    /**
+     * Sends the event like {@link #executeAsync(Map, boolean, String, GdsBaseStatement)}, waiting for the
+     * acknowledgement at most until the given deadline.
+     */
+    public static CompletableFuture<DMLResultSet> executeAsync(Map<String, byte[]> attachments,
+                                                              boolean onlyAttachmentDML,
+                                                              String sql,
+                                                              GdsBaseStatement statement,
+                                                              ExecutionDeadline deadline) {
+        try {
+            GdsConnection gdsConnection = ((GdsJdbcConnection) statement.getConnection()).getGdsConnection();
+            String queryId = gdsConnection.nextRequestId();
+            MessageData data;
+            if (onlyAttachmentDML) {
+                data = AttachmentInsertConverter.getMessageData6AttachmentResponse(sql);
+            } else {
+                data = new MessageData2EventImpl(sql, attachments, Collections.emptyList());
+            }
+            GdsConnection.TransactionExecutor executor =
+                    gdsConnection.getNewExecutor(data, queryId, deadline.timeoutMillis(QUERY_TIMEOUT_DEFAULT));
+            return Futures.thenApplyAsync(deadline.track(executor.getResultFuture()),
+                    response -> new DMLResultSet(response, onlyAttachmentDML, queryId, sql, statement),
+                    PrefetchScheduler.executor());
+        } catch (Throwable ex) {
+            return Futures.failed(ex);
+        }
+    }
+
+    private DMLResultSet(MessageData response,
+                         boolean onlyAttachmentDML,
+                         String queryId,
+                         String sql,
+                         GdsBaseStatement statement) throws Throwable {
         super(false, sql, statement);
-        queryId = UUID.randomUUID().toString();
+        this.queryId = queryId;
         setupTimeout(gdsJdbcConnection.getClientInfo(DriverPropertyInfoHelper.TIMEOUT));
-        MessageData data;
         if (onlyAttachmentDML) {
-            data = AttachmentInsertConverter.getMessageData6AttachmentResponse(sql);
-            GdsConnection.OneTimeSyncTransactionExecutor executor =
-                    gdsJdbcConnection.getGdsConnection().getNewExecutor(data, queryId, QUERY_TIMEOUT_DEFAULT);
-            MessageData7AttachmentResponseAck orphanAttachmentInsertResult = executor.executeAndGetOrphanAttachmentInsertResult();
+            MessageData7AttachmentResponseAck orphanAttachmentInsertResult = response.asAttachmentResponseAckMessageData7();
             if (!AckStatus.OK.equals(orphanAttachmentInsertResult.getGlobalStatus())) {
                 mutationCount = 0;
                 resultSetIterator = null;
@@ -66,11 +113,10 @@ public class DMLResultSet extends AbstractGdsResultSet {
             //resultSets.add(new DMLResultSet((int) mutationCount, statement, queryId, fields, rows, sql, insertedRows, updatedRows, tableNames));
             resultSetIterator = resultSets.iterator();
             nextDMLResultSet();
+            updateCounts = new int[]{1};
+            recordUpdateCounts = new int[]{1};
         } else {
-            data = new MessageData2EventImpl(sql, attachments, Collections.emptyList());
-            GdsConnection.OneTimeSyncTransactionExecutor executor =
-                    gdsJdbcConnection.getGdsConnection().getNewExecutor(data, queryId, QUERY_TIMEOUT_DEFAULT);
-            MessageData3EventAck dmlResponse = executor.executeAndGetDmlResult();
+            MessageData3EventAck dmlResponse = response.asEventAckMessageData3();
             if (!AckStatus.OK.equals(dmlResponse.getGlobalStatus())) {
                 mutationCount = 0;
                 resultSetIterator = null;
@@ -78,8 +124,12 @@ public class DMLResultSet extends AbstractGdsResultSet {
             }
             int oks = 0;
             List<ResultSetWrapper> resultSets = new ArrayList<>();
+            updateCounts = new int[dmlResponse.getEventResult().size()];
+            List<Integer> recordCounts = new ArrayList<>();
+            int statementIndex = 0;
             for (EventResultHolder resultHolder : dmlResponse.getEventResult()) {
                 int mutated = 0;
+                int failed = 0;
                 rows = new ArrayList<>();
                 List<FieldHolder> fields = resultHolder.getFieldHolders() == null
                         ? new ArrayList<>()
@@ -93,6 +143,10 @@ public class DMLResultSet extends AbstractGdsResultSet {
                             || AckStatus.CREATED.equals(status)) {
                         oks++;
                         mutated++;
+                        recordCounts.add(1);
+                    } else {
+                        failed++;
+                        recordCounts.add(Statement.EXECUTE_FAILED);
                     }
                     if (null != eventSubResultHolder.getRecordValues()
                             && !eventSubResultHolder.getRecordValues().isEmpty()) {
@@ -109,6 +163,14 @@ public class DMLResultSet extends AbstractGdsResultSet {
                 }
                 DMLResultSet temp = new DMLResultSet(mutated, statement, queryId, fields, rows, sql, insertedRows, updatedRows, tableNames);
                 resultSets.add(new ResultSetWrapper(temp, temp.rows.size() == 0));
+                //a statement with refused records failed, even if some of its records were accepted.
+                updateCounts[statementIndex++] = 0 < failed
+                        ? Statement.EXECUTE_FAILED
+                        : mutated;
+            }
+            recordUpdateCounts = new int[recordCounts.size()];
+            for (int i = 0; i < recordUpdateCounts.length; i++) {
+                recordUpdateCounts[i] = recordCounts.get(i);
             }
             resultSetIterator = resultSets.iterator();
             nextDMLResultSet();
@@ -178,6 +240,22 @@ public class DMLResultSet extends AbstractGdsResultSet {
         return mutationCount;
     }
 
+    /**
+     * @return the update counts of the statements of the event in their order, {@link Statement#EXECUTE_FAILED}
+     * for a statement with any record refused by the GDS
+     */
+    public int[] getUpdateCounts() {
+        return null == updateCounts ? new int[0] : updateCounts.clone();
+    }
+
+    /**
+     * @return 1 for every record accepted by the GDS and {@link Statement#EXECUTE_FAILED} for every refused one,
+     * in the order of the statements and of their records
+     */
+    public int[] getRecordUpdateCounts() {
+        return null == recordUpdateCounts ? new int[0] : recordUpdateCounts.clone();
+    }
+
     @Override
     public boolean next() throws SQLException {
         if (isClosed) {
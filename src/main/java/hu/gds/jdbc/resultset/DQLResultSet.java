@@ -12,12 +12,20 @@ import hu.gds.jdbc.GdsJdbcConnection;
 import hu.gds.jdbc.error.ClosedResultSetException;
 import hu.gds.jdbc.error.GdsException;
 import hu.gds.jdbc.error.InvalidParameterException;
+import hu.gds.jdbc.util.DeadlineTimer;
+import hu.gds.jdbc.util.ExecutionDeadline;
+import hu.gds.jdbc.util.Futures;
 import hu.gds.jdbc.util.GdsConstants;
+import hu.gds.jdbc.util.MemoryBudget;
+import hu.gds.jdbc.util.PrefetchScheduler;
+import io.netty.util.Timeout;
 import org.msgpack.value.Value;
 import org.msgpack.value.impl.*;
 
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static hu.gds.jdbc.resultset.GdsResultSetMetaData.ColumnMetaData;
 
@@ -26,6 +34,10 @@ public class DQLResultSet extends AbstractGdsResultSet {
     private int QUERY_PAGE_SIZE;
     private int QUERY_TYPE;
     private int PREFETCH_NUMBER;
+    private int PREFETCH_MIN;
+    private int PREFETCH_MAX;
+
+    private final static double EWMA_WEIGHT = 0.3;
 
     private final static int MAX_RANDOM_DELAY_BETWEEN_ERROR = 1000;
 
@@ -42,7 +54,36 @@ public class DQLResultSet extends AbstractGdsResultSet {
     AttachmentResultHolder attachmentResultHolder;
     private final Object lock = new Object();
     private final Deque<MessageData11QueryRequestAck> prefechedResponses = new ArrayDeque<>();
+    /*
+        The estimated sizes of the prefetched responses in the same order, accounted in the memory budget of the connection.
+     */
+    private final Deque<Long> prefechedResponseSizes = new ArrayDeque<>();
     private PrefetchState state = PrefetchState.IDLING;
+    /*
+        The request of the next page in flight (prefetched or waited for), the future of the page across its retries,
+        the retry waiting on the timer, and whether the result set was closed or aborted, guarded by the lock.
+     */
+    private GdsConnection.TransactionExecutor pageExecutor;
+    private CompletableFuture<MessageData11QueryRequestAck> pendingPage;
+    private Timeout pageRetry;
+    private boolean prefetchCancelled = false;
+    /*
+        The deadline of the execution, its abort (query timeout or cancel) stops the prefetch and fails
+        the page requests in flight.
+     */
+    private ExecutionDeadline deadline = ExecutionDeadline.none();
+    private volatile SQLException abortCause;
+
+    /*
+        The prefetch depth follows the ratio of the page latency and the time the consumer needs to drain a page,
+        both are exponentially weighted moving averages in nanoseconds, guarded by the lock.
+     */
+    private int prefetchDepth;
+    private double pageLatencyAverage = 0;
+    private double pageDrainTimeAverage = 0;
+    private long pageConsumptionStarted = System.nanoTime();
+    private long prefetchHits = 0;
+    private long prefetchMisses = 0;
     private int retryOnError;
 
     private String tableName;
@@ -65,45 +106,103 @@ public class DQLResultSet extends AbstractGdsResultSet {
                       String sql) throws SQLException {
         this.queryResponse = queryResponse;
         this.metaData = initNotAttachmentDql(queryResponse);
-        this.queryId = UUID.randomUUID().toString();
+        this.queryId = gdsJdbcConnection.getGdsConnection().nextRequestId();
         this.sql = sql;
-        this.retryOnError = (int) longValueFromString(gdsJdbcConnection.getClientInfo(DriverPropertyInfoHelper.RETRY_LIMIT_ON_ERROR),
-                "retryOnError", RETRY_ON_ERROR_DEFAULT);
+        readConfiguration();
+    }
 
+    private void readConfiguration() throws SQLException {
         this.QUERY_TYPE = (int) longValueFromString(gdsJdbcConnection.getClientInfo(DriverPropertyInfoHelper.DQL_QUERY_TYPE),
                 "QUERY_TYPE", 0);
 
         this.QUERY_PAGE_SIZE = (int) longValueFromString(gdsJdbcConnection.getClientInfo(DriverPropertyInfoHelper.DQL_QUERY_PAGE_SIZE),
                 "QUERY_PAGE_SIZE", 100);
+        readPrefetchConfiguration();
+    }
+
+    /*
+        The executing result sets read only these, their pages are prefetched on the shared scheduler.
+     */
+    private void readPrefetchConfiguration() throws SQLException {
+        this.retryOnError = (int) longValueFromString(gdsJdbcConnection.getClientInfo(DriverPropertyInfoHelper.RETRY_LIMIT_ON_ERROR),
+                "retryOnError", RETRY_ON_ERROR_DEFAULT);
 
         this.PREFETCH_NUMBER = (int) longValueFromString(gdsJdbcConnection.getClientInfo(DriverPropertyInfoHelper.PREFETCH),
                 "PREFETCH_NUMBER", 3);
+        this.PREFETCH_MIN = (int) longValueFromString(gdsJdbcConnection.getClientInfo(DriverPropertyInfoHelper.PREFETCH_MIN),
+                "PREFETCH_MIN", Math.min(1, PREFETCH_NUMBER));
+        this.PREFETCH_MAX = (int) longValueFromString(gdsJdbcConnection.getClientInfo(DriverPropertyInfoHelper.PREFETCH_MAX),
+                "PREFETCH_MAX", Math.max(PREFETCH_NUMBER, DriverPropertyInfoHelper.PREFETCH_MAX_DEFAULT));
+        if (PREFETCH_MAX < PREFETCH_MIN) {
+            throw new IllegalArgumentException("The value of the 'PREFETCH_MAX' parameter must not be less than 'PREFETCH_MIN'!");
+        }
+        this.prefetchDepth = Math.max(PREFETCH_MIN, Math.min(PREFETCH_MAX, PREFETCH_NUMBER));
     }
 
-
     public void addRow(List<Value> row) {
         this.rows.add(row);
     }
 
-    public DQLResultSet(boolean attachmentDQL,
-                        String sql,
-                        String tableName,
-                        List<String> attachmentSelectedFields,
-                        GdsBaseStatement statement,
-                        ConsistencyType consistencyType) throws Throwable {
+    private DQLResultSet(boolean attachmentDQL,
+                         String sql,
+                         String tableName,
+                         GdsBaseStatement statement,
+                         ExecutionDeadline deadline) throws SQLException {
         super(attachmentDQL, sql, statement);
         //this.connection = connection;
         this.sql = sql;
         this.tableName = tableName;
-        queryId = UUID.randomUUID().toString();
+        queryId = gdsJdbcConnection.getGdsConnection().nextRequestId();
         setupTimeout(gdsJdbcConnection.getClientInfo(DriverPropertyInfoHelper.TIMEOUT));
+        readPrefetchConfiguration();
+        this.deadline = deadline;
+        deadline.addListener(this::abort);
+    }
 
-        MessageData data;
-        if (attachmentDQL) {
-            data = new MessageData4AttachmentRequestImpl(sql);
-            GdsConnection.OneTimeSyncTransactionExecutor executor =
-                    gdsJdbcConnection.getGdsConnection().getNewExecutor(data, queryId, timeout);
-            attachmentResponse = executor.executeAndGetAttachmentQueryResult();
+    /**
+     * Sends the query (or the attachment request) to the GDS without waiting for the reply.
+     *
+     * @return the future of the result set, completed when the first page (or the attachment) arrived.
+     */
+    public static CompletableFuture<DQLResultSet> executeAsync(boolean attachmentDQL,
+                                                              String sql,
+                                                              String tableName,
+                                                              List<String> attachmentSelectedFields,
+                                                              GdsBaseStatement statement,
+                                                              ConsistencyType consistencyType) {
+        return executeAsync(attachmentDQL, sql, tableName, attachmentSelectedFields, statement, consistencyType,
+                ExecutionDeadline.none());
+    }
+
+    /**
+     * Sends the query like {@link #executeAsync(boolean, String, String, List, GdsBaseStatement, ConsistencyType)},
+     * the first page and the next pages are requested within the given deadline.
+     */
+    public static CompletableFuture<DQLResultSet> executeAsync(boolean attachmentDQL,
+                                                              String sql,
+                                                              String tableName,
+                                                              List<String> attachmentSelectedFields,
+                                                              GdsBaseStatement statement,
+                                                              ConsistencyType consistencyType,
+                                                              ExecutionDeadline deadline) {
+        try {
+            DQLResultSet resultSet = new DQLResultSet(attachmentDQL, sql, tableName, statement, deadline);
+            if (attachmentDQL) {
+                return resultSet.sendAttachmentRequest(attachmentSelectedFields);
+            } else {
+                return resultSet.sendQueryRequest(consistencyType);
+            }
+        } catch (Throwable ex) {
+            return Futures.failed(ex);
+        }
+    }
+
+    private CompletableFuture<DQLResultSet> sendAttachmentRequest(List<String> attachmentSelectedFields) throws Throwable {
+        MessageData data = new MessageData4AttachmentRequestImpl(sql);
+        GdsConnection.TransactionExecutor executor =
+                gdsJdbcConnection.getGdsConnection().getNewExecutor(data, queryId, deadline.timeoutMillis(timeout));
+        return Futures.thenApplyAsync(deadline.track(executor.getResultFuture()), response -> {
+            attachmentResponse = response;
             if (attachmentResponse.isAttachmentRequestAckMessageData5()) {
                 MessageData5AttachmentRequestAck ack =
                         attachmentResponse.asAttachmentRequestAckMessageData5();
@@ -123,24 +222,33 @@ public class DQLResultSet extends AbstractGdsResultSet {
                 metaDataList.add(ColumnMetaDataHelper.createAttachmentColumnMetaData(attachmentField));
             }
             metaData = new GdsResultSetMetaData(metaDataList, tableName, gdsJdbcConnection);
-        } else {
-            data = new MessageData10QueryRequestImpl(
-                    sql,
-                    consistencyType,
-                    timeout,
-                    QUERY_PAGE_SIZE,
-                    QUERY_TYPE);
-            GdsConnection.OneTimeSyncTransactionExecutor executor =
-                    gdsJdbcConnection.getGdsConnection().getNewExecutor(data, queryId, timeout);
-            queryResponse = executor.executeAndGetQueryResult();
+            return this;
+        }, PrefetchScheduler.executor());
+    }
+
+    private CompletableFuture<DQLResultSet> sendQueryRequest(ConsistencyType consistencyType) throws Throwable {
+        long requestTimeout = deadline.timeoutMillis(timeout);
+        MessageData data = new MessageData10QueryRequestImpl(
+                sql,
+                consistencyType,
+                requestTimeout,
+                QUERY_PAGE_SIZE,
+                QUERY_TYPE);
+        GdsConnection.TransactionExecutor executor =
+                gdsJdbcConnection.getGdsConnection().getNewExecutor(data, queryId, requestTimeout);
+        deadline.track(executor.getResultFuture());
+        return Futures.thenApplyAsync(executor.getQueryResultFuture(), response -> {
+            queryResponse = response;
             metaData = initNotAttachmentDql(queryResponse);
             if (queryResponse.getQueryResponseHolder().getMorePage()) {
                 synchronized (lock) {
+                    pageConsumptionStarted = System.nanoTime();
                     state = PrefetchState.IN_PROGRESS;
-                    doPrefetch(retryOnError, queryResponse.getQueryResponseHolder().getQueryContextHolder());
+                    doPrefetch(queryResponse.getQueryResponseHolder().getQueryContextHolder());
                 }
             }
-        }
+            return this;
+        }, PrefetchScheduler.executor());
     }
 
     /*
@@ -261,11 +369,26 @@ public class DQLResultSet extends AbstractGdsResultSet {
             QueryContextHolder queryContextHolder = null;
             if (0 < PREFETCH_NUMBER) {
                 synchronized (lock) {
+                    recordPageDrained();
+                    boolean waited = false;
                     if (prefechedResponses.isEmpty()
                             && PrefetchState.IN_PROGRESS.equals(state)) {
+                        waited = true;
                         lock.wait();
                     }
-                    if (PrefetchState.IDLING.equals(state)) {
+                    if (null != abortCause) {
+                        throw abortCause;
+                    }
+                    if (prefetchCancelled) {
+                        throw new ClosedResultSetException(sql);
+                    }
+                    if (waited || prefechedResponses.isEmpty()) {
+                        prefetchMisses++;
+                    } else {
+                        prefetchHits++;
+                    }
+                    if (PrefetchState.IDLING.equals(state)
+                            && (prefechedResponses.isEmpty() || !getPrefetchMemoryBudget().isExhausted())) {
                         MessageData11QueryRequestAck prefetchedLastElement = prefechedResponses.peekLast();
                         if (null == prefetchedLastElement) {
                             prefetchedLastElement = queryResponse;
@@ -277,63 +400,245 @@ public class DQLResultSet extends AbstractGdsResultSet {
                         }
                     }
                     nextQueryResponse = prefechedResponses.poll();
+                    if (null != nextQueryResponse) {
+                        getPrefetchMemoryBudget().release(prefechedResponseSizes.poll());
+                    }
                 }
             }
             if (null != nextQueryResponse) {
                 queryResponse = nextQueryResponse;
                 setRows(queryResponse);
             } else {
-                int tryout = retryOnError;
-                while (true) {
-                    try {
-                        queryResponse = makeNextQuery(queryResponse.getQueryResponseHolder().getQueryContextHolder());
-                        checkResponseAndSetRows(queryResponse);
-                        if (prefetch) {
-                            if (!queryResponse.getQueryResponseHolder().getMorePage()) {
-                                prefetch = false;
-                                synchronized (lock) {
-                                    state = PrefetchState.IDLING;
-                                    lock.notifyAll();
-                                }
-                            } else {
-                                queryContextHolder = queryResponse.getQueryResponseHolder().getQueryContextHolder();
-                            }
+                long sent = System.nanoTime();
+                try {
+                    queryResponse = Futures.await(requestNextPage(queryResponse.getQueryResponseHolder().getQueryContextHolder()));
+                } catch (Throwable ex) {
+                    if (prefetch) {
+                        synchronized (lock) {
+                            state = PrefetchState.IDLING;
+                            lock.notifyAll();
                         }
-                        break;
-                    } catch (Throwable ex) {
-                        if (0 >= --tryout
-                                || gdsJdbcConnection.getGdsConnection().isDisconnected()) {
-                            if (prefetch) {
-                                synchronized (lock) {
-                                    state = PrefetchState.IDLING;
-                                    lock.notifyAll();
-                                }
-                            }
-                            throw ex;
-                        } else {
-                            Random random = new Random();
-                            try {
-                                //noinspection BusyWait
-                                Thread.sleep(random.nextInt(MAX_RANDOM_DELAY_BETWEEN_ERROR));
-                            } catch (InterruptedException ignored) {
-                            }
+                    }
+                    throw ex;
+                }
+                synchronized (lock) {
+                    recordPageLatency(System.nanoTime() - sent);
+                }
+                setRows(queryResponse);
+                if (prefetch) {
+                    if (!queryResponse.getQueryResponseHolder().getMorePage()) {
+                        prefetch = false;
+                        synchronized (lock) {
+                            state = PrefetchState.IDLING;
+                            lock.notifyAll();
                         }
+                    } else {
+                        queryContextHolder = queryResponse.getQueryResponseHolder().getQueryContextHolder();
                     }
                 }
             }
+            synchronized (lock) {
+                pageConsumptionStarted = System.nanoTime();
+            }
             if (prefetch) {
-                doPrefetch(retryOnError, queryContextHolder);
+                doPrefetch(queryContextHolder);
             }
         } catch (Throwable ex) {
+            if (null != abortCause) {
+                //the query timeout or the cancel is reported as it is
+                throw abortCause;
+            }
             throw new GdsException("Error while execute sql", ex);
         }
     }
 
-    private MessageData11QueryRequestAck makeNextQuery(QueryContextHolder queryContextHolder) throws Throwable {
-        String queryId = UUID.randomUUID().toString();
-        MessageData12NextQueryPageImpl data = new MessageData12NextQueryPageImpl(queryContextHolder, timeout);
-        GdsConnection.OneTimeSyncTransactionExecutor executor = gdsJdbcConnection.getGdsConnection().getNewExecutor(data, queryId, timeout);
-        return executor.executeAndGetQueryResult();
+    /*
+        A lockban hívandó.
+     */
+    private void recordPageDrained() {
+        pageDrainTimeAverage = ewma(pageDrainTimeAverage, System.nanoTime() - pageConsumptionStarted);
+        adaptPrefetchDepth();
+    }
+
+    private void recordPageLatency(long latency) {
+        pageLatencyAverage = ewma(pageLatencyAverage, latency);
+        adaptPrefetchDepth();
+    }
+
+    private static double ewma(double average, long sample) {
+        return 0 == average
+                ? sample
+                : EWMA_WEIGHT * sample + (1 - EWMA_WEIGHT) * average;
+    }
+
+    /*
+        While one page arrives the consumer drains latency / drainTime pages, that many have to be buffered
+        (plus the one being consumed) so the consumer does not wait on the network.
+     */
+    private void adaptPrefetchDepth() {
+        if (0 == pageLatencyAverage || 0 == pageDrainTimeAverage) {
+            return;
+        }
+        int depth = (int) Math.ceil(pageLatencyAverage / pageDrainTimeAverage) + 1;
+        prefetchDepth = Math.max(PREFETCH_MIN, Math.min(PREFETCH_MAX, depth));
+    }
+
+    private MemoryBudget getPrefetchMemoryBudget() {
+        return gdsJdbcConnection.getPrefetchMemoryBudget();
+    }
+
+    /**
+     * @return the estimated bytes of the pages prefetched but not yet consumed
+     */
+    public long getPrefetchedBytes() {
+        synchronized (lock) {
+            long bytes = 0;
+            for (Long size : prefechedResponseSizes) {
+                bytes += size;
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * @return the number of pages currently allowed to be prefetched
+     */
+    public int getPrefetchDepth() {
+        synchronized (lock) {
+            return 0 < PREFETCH_NUMBER ? prefetchDepth : 0;
+        }
+    }
+
+    /**
+     * @return how many times the next page was already prefetched when the consumer reached it
+     */
+    public long getPrefetchHits() {
+        synchronized (lock) {
+            return prefetchHits;
+        }
+    }
+
+    /**
+     * @return how many times the consumer had to wait for the next page
+     */
+    public long getPrefetchMisses() {
+        synchronized (lock) {
+            return prefetchMisses;
+        }
+    }
+
+    /*
+        Requests the next page for the consumer and for the prefetch alike. A failed request (or a page not ok)
+        is sent again after a random delay on the shared timer, at most retryOnError times. Close and the abort
+        of the execution cancel the retry waiting on the timer and fail the returned future at once.
+     */
+    private CompletableFuture<MessageData11QueryRequestAck> requestNextPage(QueryContextHolder queryContextHolder) {
+        CompletableFuture<MessageData11QueryRequestAck> page = new CompletableFuture<>();
+        sendNextPage(page, queryContextHolder, retryOnError);
+        return page;
+    }
+
+    private void sendNextPage(CompletableFuture<MessageData11QueryRequestAck> page,
+                              QueryContextHolder queryContextHolder,
+                              int tryout) {
+        CompletableFuture<MessageData11QueryRequestAck> reply;
+        synchronized (lock) {
+            pageRetry = null;
+            if (prefetchCancelled) {
+                page.completeExceptionally(stoppedCause());
+                return;
+            }
+            pendingPage = page;
+            try {
+                pageExecutor = newNextPageExecutor(queryContextHolder);
+                reply = pageExecutor.getQueryResultFuture();
+            } catch (Throwable ex) {
+                reply = Futures.failed(ex);
+            }
+        }
+        reply.whenComplete((response, cause) -> onNextPageReply(page, queryContextHolder, tryout, response, cause));
+    }
+
+    /*
+        Runs on the I/O thread, it only completes the page or schedules the retry.
+     */
+    private void onNextPageReply(CompletableFuture<MessageData11QueryRequestAck> page,
+                                 QueryContextHolder queryContextHolder,
+                                 int tryout,
+                                 MessageData11QueryRequestAck response,
+                                 Throwable cause) {
+        Throwable failure = cause;
+        if (null == failure) {
+            try {
+                checkQueryResponse(response);
+            } catch (SQLException ex) {
+                failure = ex;
+            }
+        }
+        synchronized (lock) {
+            if (page != pendingPage) {
+                //already failed by close or abort
+                return;
+            }
+            pageExecutor = null;
+            if (null == failure) {
+                pendingPage = null;
+                page.complete(response);
+            } else if (prefetchCancelled) {
+                pendingPage = null;
+                page.completeExceptionally(stoppedCause());
+            } else if (1 >= tryout || gdsJdbcConnection.getGdsConnection().isDisconnected()) {
+                pendingPage = null;
+                page.completeExceptionally(Futures.unwrap(failure));
+            } else {
+                pageRetry = DeadlineTimer.schedule(
+                        () -> PrefetchScheduler.execute(() -> sendNextPage(page, queryContextHolder, tryout - 1)),
+                        ThreadLocalRandom.current().nextInt(MAX_RANDOM_DELAY_BETWEEN_ERROR));
+            }
+        }
+    }
+
+    /*
+        Called with the lock held, fails the page requested and cancels its retry waiting on the timer.
+     */
+    private void stopPageRequest(SQLException cause) {
+        if (null != pageRetry) {
+            pageRetry.cancel();
+            pageRetry = null;
+        }
+        if (null != pendingPage) {
+            pendingPage.completeExceptionally(cause);
+            pendingPage = null;
+        }
+    }
+
+    private SQLException stoppedCause() {
+        return null != abortCause ? abortCause : new ClosedResultSetException(sql);
+    }
+
+    private GdsConnection.TransactionExecutor newNextPageExecutor(QueryContextHolder queryContextHolder) throws Throwable {
+        String queryId = gdsJdbcConnection.getGdsConnection().nextRequestId();
+        long requestTimeout = deadline.timeoutMillis(timeout);
+        MessageData12NextQueryPageImpl data = new MessageData12NextQueryPageImpl(queryContextHolder, requestTimeout);
+        GdsConnection.TransactionExecutor executor =
+                gdsJdbcConnection.getGdsConnection().getNewExecutor(data, queryId, requestTimeout);
+        deadline.track(executor.getResultFuture());
+        return executor;
+    }
+
+    /*
+        The query timeout expired or the statement was cancelled: the prefetch stops, the page in flight fails,
+        and the thread waiting for a page is woken up with the cause.
+     */
+    private void abort(SQLException cause) {
+        synchronized (lock) {
+            abortCause = cause;
+            prefetchCancelled = true;
+            pageExecutor = null;
+            stopPageRequest(cause);
+            state = PrefetchState.IDLING;
+            lock.notifyAll();
+        }
     }
 
     /*
@@ -342,42 +647,93 @@ public class DQLResultSet extends AbstractGdsResultSet {
           ha egyet sikerült lekérnie,
           ha megállt, mert mindent lekérdezett
           ha hibával ért véget, a tryoutok száma miatt.
+        Minden lépés külön feladat a közös PrefetchScheduler-en, szálat nem foglal, amíg a válaszra vár.
      */
-    private void doPrefetch(int tryout, QueryContextHolder queryContextHolder) {
-        new Thread(() -> {
-            try {
-                MessageData11QueryRequestAck nextPrefetchedQueryResponse = makeNextQuery(queryContextHolder);
-                checkQueryResponse(nextPrefetchedQueryResponse);
-                boolean prefetch = false;
-                synchronized (lock) {
-                    prefechedResponses.add(nextPrefetchedQueryResponse);
-                    if (PREFETCH_NUMBER <= prefechedResponses.size()) {
-                        state = PrefetchState.IDLING;
-                    } else if (nextPrefetchedQueryResponse.getQueryResponseHolder().getMorePage()) {
-                        prefetch = true;
-                    }
-                    lock.notifyAll();
-                }
-                if (prefetch) {
-                    doPrefetch(tryout, nextPrefetchedQueryResponse.getQueryResponseHolder().getQueryContextHolder());
-                }
-            } catch (Throwable ex) {
-                if (0 >= tryout
-                        || gdsJdbcConnection.getGdsConnection().isDisconnected()) {
-                    synchronized (lock) {
-                        state = PrefetchState.IDLING;
-                        lock.notifyAll();
-                    }
-                } else {
-                    Random random = new Random();
-                    try {
-                        Thread.sleep(random.nextInt(MAX_RANDOM_DELAY_BETWEEN_ERROR));
-                    } catch (InterruptedException ignored) {
-                    }
-                    doPrefetch(tryout - 1, queryContextHolder);
-                }
+    private void doPrefetch(QueryContextHolder queryContextHolder) {
+        PrefetchScheduler.execute(() -> {
+            long sent = System.nanoTime();
+            requestNextPage(queryContextHolder).whenCompleteAsync((nextPrefetchedQueryResponse, cause) ->
+                            onPrefetched(sent, nextPrefetchedQueryResponse, cause),
+                    PrefetchScheduler.executor());
+        });
+    }
+
+    /*
+        The retries are already used up by the request of the page when it fails, the consumer requests
+        the page itself then.
+     */
+    private void onPrefetched(long sent,
+                              MessageData11QueryRequestAck nextPrefetchedQueryResponse,
+                              Throwable cause) {
+        synchronized (lock) {
+            if (prefetchCancelled) {
+                return;
+            }
+            if (null != cause) {
+                state = PrefetchState.IDLING;
+                lock.notifyAll();
+                return;
+            }
+            recordPageLatency(System.nanoTime() - sent);
+        }
+        long size = PageSizeEstimator.estimate(nextPrefetchedQueryResponse);
+        boolean prefetch = false;
+        synchronized (lock) {
+            if (prefetchCancelled) {
+                return;
+            }
+            prefechedResponses.add(nextPrefetchedQueryResponse);
+            prefechedResponseSizes.add(size);
+            getPrefetchMemoryBudget().reserve(size);
+            if (prefetchDepth <= prefechedResponses.size()
+                    || getPrefetchMemoryBudget().isExhausted()) {
+                state = PrefetchState.IDLING;
+            } else if (nextPrefetchedQueryResponse.getQueryResponseHolder().getMorePage()) {
+                prefetch = true;
+            } else {
+                state = PrefetchState.IDLING;
+            }
+            lock.notifyAll();
+        }
+        if (prefetch) {
+            doPrefetch(nextPrefetchedQueryResponse.getQueryResponseHolder().getQueryContextHolder());
+        }
+    }
+
+    /**
+     * Stops the prefetch and drops the pages buffered so far. The request of the page in flight is abandoned,
+     * its reply is dropped when it arrives.
+     * <p>
+     * The GDS has no message to release a query context, for SCROLL queries it is freed by the GDS when it expires,
+     * as no further page is requested with it.
+     */
+    @Override
+    public void close() {
+        deadline.finish();
+        GdsConnection.TransactionExecutor executor;
+        synchronized (lock) {
+            prefetchCancelled = true;
+            executor = pageExecutor;
+            pageExecutor = null;
+            stopPageRequest(new ClosedResultSetException(sql));
+            prefechedResponses.clear();
+            for (Long size : prefechedResponseSizes) {
+                getPrefetchMemoryBudget().release(size);
             }
-        }).start();
+            prefechedResponseSizes.clear();
+            state = PrefetchState.IDLING;
+            lock.notifyAll();
+        }
+        if (null != executor) {
+            executor.cancel();
+        }
+        queryResponse = null;
+        attachmentResponse = null;
+        attachmentResultHolder = null;
+        super.close();
+        if (null != statement) {
+            statement.resultSetClosed(this);
+        }
     }
 
     @Override
@@ -4,11 +4,11 @@ import hu.arheu.gds.message.data.FieldValueType;
 import hu.gds.jdbc.GdsJdbcConnection;
 import hu.gds.jdbc.error.ColumnIndexException;
 import hu.gds.jdbc.error.InvalidParameterException;
+import hu.gds.jdbc.metainfo.FieldAttributes;
 import hu.gds.jdbc.types.JavaTypes;
 import hu.gds.jdbc.util.GdsConstants;
 import org.jetbrains.annotations.NotNull;
 
-import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
@@ -43,22 +43,27 @@ public class GdsResultSetMetaData implements ResultSetMetaData {
         }
     }
 
+    /*
+        The attributes of the fields come from the schema cache of the connection,
+        so the result sets of the same table do not query the schema store again.
+     */
     private void calculateCachedData() throws SQLException {
         String newTableName = tableName;
         if (tableName.startsWith("\"")) {
             newTableName = tableName.replaceAll("\"", "");
         }
-        String sql = "SELECT * FROM \"@gds.config.store.schema\" WHERE table = '" + newTableName + "'";
 
-        ResultSet rs = connection.createStatement().executeQuery(sql);
-        while (rs.next()) {
-            String field = rs.getString("field_name");
+        for (Map.Entry<String, FieldAttributes> entry : connection.getSchemaCache().getFieldAttributes(newTableName).entrySet()) {
+            String field = entry.getKey();
             String analyzer = null;
             if (columnNameToIndex.containsKey(GdsConstants.ANALYZER)) {
-                analyzer = rs.getString(GdsConstants.ANALYZER);
+                analyzer = entry.getValue().getAnalyzer();
             }
 
-            searchableCache.put(field, rs.getBoolean("searchable"));
+            searchableCache.put(field, entry.getValue().isSearchable());
+            if (!columnNameToIndex.containsKey(field)) {
+                continue;
+            }
             String javaTypeName = columnMetaData.get(columnNameToIndex.get(field)).javaType.getTypeName();
 
             if ("string".equals(javaTypeName) || "array".equals(javaTypeName) || "map".equals(javaTypeName)) {
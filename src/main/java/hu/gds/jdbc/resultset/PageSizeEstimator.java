@@ -0,0 +1,61 @@
+package hu.gds.jdbc.resultset;
+
+import hu.arheu.gds.message.data.MessageData11QueryRequestAck;
+import org.msgpack.value.Value;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rough estimate of the heap retained by the hits of a query page, used for the prefetch memory budget.
+ */
+class PageSizeEstimator {
+    private final static int OBJECT_HEADER = 16;
+    private final static int REFERENCE = 8;
+    private final static int SCALAR_VALUE = OBJECT_HEADER + 8;
+
+    private PageSizeEstimator() {
+    }
+
+    static long estimate(MessageData11QueryRequestAck page) {
+        if (null == page.getQueryResponseHolder()) {
+            return OBJECT_HEADER;
+        }
+        List<List<Value>> hits = page.getQueryResponseHolder().getHits();
+        long size = OBJECT_HEADER + (long) REFERENCE * hits.size();
+        for (List<Value> row : hits) {
+            size += OBJECT_HEADER + (long) REFERENCE * row.size();
+            for (Value value : row) {
+                size += estimate(value);
+            }
+        }
+        return size;
+    }
+
+    private static long estimate(Value value) {
+        if (null == value) {
+            return 0;
+        }
+        switch (value.getValueType()) {
+            case STRING:
+            case BINARY:
+                return OBJECT_HEADER + REFERENCE + OBJECT_HEADER + value.asRawValue().asByteBuffer().remaining();
+            case ARRAY:
+                long arraySize = OBJECT_HEADER + OBJECT_HEADER;
+                for (Value element : value.asArrayValue()) {
+                    arraySize += REFERENCE + estimate(element);
+                }
+                return arraySize;
+            case MAP:
+                long mapSize = OBJECT_HEADER + OBJECT_HEADER;
+                for (Map.Entry<Value, Value> entry : value.asMapValue().entrySet()) {
+                    mapSize += 2 * REFERENCE + estimate(entry.getKey()) + estimate(entry.getValue());
+                }
+                return mapSize;
+            case EXTENSION:
+                return OBJECT_HEADER + OBJECT_HEADER + value.asExtensionValue().getData().length;
+            default:
+                return SCALAR_VALUE;
+        }
+    }
+}
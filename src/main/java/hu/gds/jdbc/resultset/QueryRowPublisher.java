@@ -0,0 +1,361 @@
+package hu.gds.jdbc.resultset;
+
+import hu.arheu.gds.message.data.ConsistencyType;
+import hu.arheu.gds.message.data.FieldHolder;
+import hu.arheu.gds.message.data.MessageData;
+import hu.arheu.gds.message.data.MessageData11QueryRequestAck;
+import hu.arheu.gds.message.data.QueryContextHolder;
+import hu.arheu.gds.message.data.impl.AckStatus;
+import hu.arheu.gds.message.data.impl.MessageData10QueryRequestImpl;
+import hu.arheu.gds.message.data.impl.MessageData12NextQueryPageImpl;
+import hu.gds.jdbc.DriverPropertyInfoHelper;
+import hu.gds.jdbc.GdsBaseStatement;
+import hu.gds.jdbc.GdsConnection;
+import hu.gds.jdbc.GdsFlow;
+import hu.gds.jdbc.GdsJdbcConnection;
+import hu.gds.jdbc.error.GdsException;
+import hu.gds.jdbc.util.DeadlineTimer;
+import hu.gds.jdbc.util.ExecutionDeadline;
+import hu.gds.jdbc.util.PrefetchScheduler;
+import io.netty.util.Timeout;
+import org.msgpack.value.Value;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static hu.gds.jdbc.resultset.AbstractGdsResultSet.QUERY_TIMEOUT_DEFAULT;
+import static hu.gds.jdbc.resultset.AbstractGdsResultSet.RETRY_ON_ERROR_DEFAULT;
+import static hu.gds.jdbc.resultset.AbstractGdsResultSet.longValueFromString;
+
+/**
+ * Streams the rows of a query driven by the demand of the subscriber.
+ * <p>
+ * The query (10) is sent when the subscriber requests the first row, and a next page (12) is only
+ * requested when the outstanding demand exceeds the rows already buffered, so a slow subscriber
+ * holds at most one page, and a fast one always has the next page on the way.
+ * The signals of an arrived page are emitted on the {@link PrefetchScheduler}, never on the I/O thread,
+ * so the subscriber may block or use the connection.
+ * The publisher is unicast, it can be subscribed only once.
+ */
+public class QueryRowPublisher implements GdsFlow.Publisher<Row> {
+
+    private final static int MAX_RANDOM_DELAY_BETWEEN_ERROR = 1000;
+
+    private final String sql;
+    private final String tableName;
+    private final GdsJdbcConnection gdsJdbcConnection;
+    private final ConsistencyType consistencyType;
+    private final long timeout;
+    private final int queryPageSize;
+    private final int queryType;
+    private final int retryOnError;
+    private final ExecutionDeadline deadline;
+
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    public QueryRowPublisher(String sql,
+                             String tableName,
+                             GdsBaseStatement statement,
+                             ConsistencyType consistencyType) throws SQLException {
+        this(sql, tableName, statement, consistencyType, ExecutionDeadline.none());
+    }
+
+    /**
+     * @param deadline the deadline of the pages of the query, it is finished when the stream terminates
+     */
+    public QueryRowPublisher(String sql,
+                             String tableName,
+                             GdsBaseStatement statement,
+                             ConsistencyType consistencyType,
+                             ExecutionDeadline deadline) throws SQLException {
+        this.deadline = deadline;
+        this.sql = sql;
+        this.tableName = tableName;
+        this.gdsJdbcConnection = (GdsJdbcConnection) statement.getConnection();
+        this.consistencyType = consistencyType;
+        this.timeout = longValueFromString(gdsJdbcConnection.getClientInfo(DriverPropertyInfoHelper.TIMEOUT),
+                "timeout", QUERY_TIMEOUT_DEFAULT);
+        this.queryPageSize = (int) longValueFromString(gdsJdbcConnection.getClientInfo(DriverPropertyInfoHelper.DQL_QUERY_PAGE_SIZE),
+                "QUERY_PAGE_SIZE", -1);
+        this.queryType = (int) longValueFromString(gdsJdbcConnection.getClientInfo(DriverPropertyInfoHelper.DQL_QUERY_TYPE),
+                "QUERY_TYPE", 0);
+        this.retryOnError = (int) longValueFromString(gdsJdbcConnection.getClientInfo(DriverPropertyInfoHelper.RETRY_LIMIT_ON_ERROR),
+                "retryOnError", RETRY_ON_ERROR_DEFAULT);
+    }
+
+    /**
+     * @return a publisher which signals the given error to its subscriber.
+     */
+    public static GdsFlow.Publisher<Row> error(Throwable cause) {
+        return subscriber -> {
+            subscriber.onSubscribe(new GdsFlow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            subscriber.onError(cause);
+        };
+    }
+
+    @Override
+    public void subscribe(GdsFlow.Subscriber<? super Row> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (!subscribed.compareAndSet(false, true)) {
+            error(new IllegalStateException("The query publisher allows only one subscriber")).subscribe(subscriber);
+            return;
+        }
+        RowSubscription subscription = new RowSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        //the query timeout, the cancel or the close of the statement ends the stream even between the pages
+        deadline.addListener(subscription::aborted);
+    }
+
+    private class RowSubscription implements GdsFlow.Subscription {
+        private final GdsFlow.Subscriber<? super Row> subscriber;
+
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final Queue<Row> buffer = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger buffered = new AtomicInteger();
+
+        private GdsResultSetMetaData metaData;
+        private final Map<String, Integer> fieldsIndexMap = new LinkedHashMap<>();
+
+        /*
+            The context of the next page, null until the first page arrived.
+         */
+        private volatile QueryContextHolder queryContextHolder;
+        private volatile boolean pageInFlight;
+        /*
+            The request of the page in flight and the retry scheduled, stopped when the stream ends early.
+         */
+        private volatile GdsConnection.TransactionExecutor pageExecutor;
+        private volatile Timeout pageRetry;
+        private volatile boolean lastPageReceived;
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        private boolean terminated;
+
+        RowSubscription(GdsFlow.Subscriber<? super Row> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("The requested number of rows must be positive, but was " + n);
+                drain();
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = requested.get();
+                if (Long.MAX_VALUE == current) {
+                    break;
+                }
+                next = current + n;
+                if (next < 0) {
+                    next = Long.MAX_VALUE;
+                }
+            } while (!requested.compareAndSet(current, next));
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            stopPageRequest();
+            drain();
+        }
+
+        private void aborted(SQLException cause) {
+            if (null == error) {
+                error = cause;
+            }
+            stopPageRequest();
+            drain();
+        }
+
+        /*
+            The request in flight is abandoned, so its slot of the concurrency limit is freed at once.
+         */
+        private void stopPageRequest() {
+            Timeout retry = pageRetry;
+            pageRetry = null;
+            if (null != retry) {
+                retry.cancel();
+            }
+            GdsConnection.TransactionExecutor executor = pageExecutor;
+            pageExecutor = null;
+            if (null != executor) {
+                executor.cancel();
+            }
+        }
+
+        /*
+            Only one thread emits at a time, the others just mark that they missed a round.
+         */
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            while (true) {
+                if (terminated) {
+                    return;
+                }
+                if (cancelled) {
+                    terminated = true;
+                    deadline.finish();
+                    buffer.clear();
+                    return;
+                }
+                long demand = requested.get();
+                long emitted = 0;
+                while (emitted != demand && !cancelled && null == error) {
+                    Row row = buffer.poll();
+                    if (null == row) {
+                        break;
+                    }
+                    buffered.decrementAndGet();
+                    subscriber.onNext(row);
+                    emitted++;
+                }
+                if (0 != emitted && Long.MAX_VALUE != demand) {
+                    requested.addAndGet(-emitted);
+                }
+                if (cancelled) {
+                    continue;
+                }
+                Throwable cause = error;
+                if (null != cause) {
+                    terminated = true;
+                    deadline.finish();
+                    buffer.clear();
+                    subscriber.onError(cause);
+                    return;
+                }
+                if (lastPageReceived && buffer.isEmpty()) {
+                    terminated = true;
+                    deadline.finish();
+                    subscriber.onComplete();
+                    return;
+                }
+                if (!pageInFlight && !lastPageReceived && requested.get() > buffered.get()) {
+                    pageInFlight = true;
+                    fetchPage(retryOnError);
+                }
+                missed = wip.addAndGet(-missed);
+                if (0 == missed) {
+                    return;
+                }
+            }
+        }
+
+        private void fetchPage(int tryout) {
+            pageRetry = null;
+            if (cancelled || null != error) {
+                pageInFlight = false;
+                drain();
+                return;
+            }
+            try {
+                GdsConnection gdsConnection = gdsJdbcConnection.getGdsConnection();
+                MessageData data;
+                long requestTimeout = deadline.timeoutMillis(timeout);
+                if (null == queryContextHolder) {
+                    data = new MessageData10QueryRequestImpl(sql, consistencyType, requestTimeout, queryPageSize, queryType);
+                } else {
+                    data = new MessageData12NextQueryPageImpl(queryContextHolder, requestTimeout);
+                }
+                GdsConnection.TransactionExecutor executor =
+                        gdsConnection.getNewExecutor(data, gdsConnection.nextRequestId(), requestTimeout);
+                deadline.track(executor.getResultFuture());
+                pageExecutor = executor;
+                if (cancelled || null != error) {
+                    //ended while the request was sent
+                    stopPageRequest();
+                }
+                //the reply arrives on the I/O thread, the rows are emitted on the scheduler
+                executor.getQueryResultFuture()
+                        .whenCompleteAsync((response, cause) -> {
+                            if (null == cause) {
+                                pageReceived(response);
+                            } else {
+                                pageFailed(cause, tryout);
+                            }
+                        }, PrefetchScheduler.executor());
+            } catch (Throwable ex) {
+                pageFailed(ex, tryout);
+            }
+        }
+
+        private void pageReceived(MessageData11QueryRequestAck response) {
+            pageExecutor = null;
+            try {
+                if (!AckStatus.OK.equals(response.getGlobalStatus())) {
+                    throw new GdsException("The query response is not ok: " + response.getGlobalStatus() + ", message: " + response.getGlobalException());
+                }
+                if (null == metaData) {
+                    List<FieldHolder> fields = response.getQueryResponseHolder().getFieldHolders();
+                    List<GdsResultSetMetaData.ColumnMetaData> metaDataList = new ArrayList<>();
+                    for (int i = 0; i < fields.size(); i++) {
+                        fieldsIndexMap.put(fields.get(i).getFieldName(), i + 1);
+                        metaDataList.add(ColumnMetaDataHelper.createColumnMetaData(fields.get(i)));
+                    }
+                    metaData = new GdsResultSetMetaData(metaDataList, tableName, gdsJdbcConnection);
+                }
+                for (List<Value> hit : response.getQueryResponseHolder().getHits()) {
+                    buffer.add(new Row(hit, metaData, fieldsIndexMap));
+                    buffered.incrementAndGet();
+                }
+                if (response.getQueryResponseHolder().getMorePage()) {
+                    queryContextHolder = response.getQueryResponseHolder().getQueryContextHolder();
+                } else {
+                    lastPageReceived = true;
+                }
+            } catch (Throwable ex) {
+                if (null == error) {
+                    error = ex;
+                }
+            }
+            pageInFlight = false;
+            drain();
+        }
+
+        private void pageFailed(Throwable cause, int tryout) {
+            pageExecutor = null;
+            SQLException abortCause = deadline.getAbortCause();
+            if (null != abortCause) {
+                //the query timeout, the cancel or the close of the statement is not retried
+                if (null == error) {
+                    error = abortCause;
+                }
+                pageInFlight = false;
+                drain();
+            } else if (cancelled
+                    || null != error
+                    || 1 >= tryout
+                    || gdsJdbcConnection.getGdsConnection().isDisconnected()) {
+                if (null == error) {
+                    error = new GdsException("Error while execute sql", cause);
+                }
+                pageInFlight = false;
+                drain();
+            } else {
+                pageRetry = DeadlineTimer.schedule(() -> PrefetchScheduler.execute(() -> fetchPage(tryout - 1)),
+                        ThreadLocalRandom.current().nextInt(MAX_RANDOM_DELAY_BETWEEN_ERROR));
+            }
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package hu.gds.jdbc.resultset;
+
+import org.msgpack.value.Value;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static hu.gds.jdbc.resultset.MsgPackValueHelper.getObjectFromValue;
+
+/**
+ * One row of a query result emitted by {@link QueryRowPublisher}.
+ * The column indexes start from 1, the same way as in the {@link java.sql.ResultSet}.
+ */
+public class Row {
+    private final List<Value> values;
+    private final GdsResultSetMetaData metaData;
+    private final Map<String, Integer> fieldsIndexMap;
+
+    Row(List<Value> values, GdsResultSetMetaData metaData, Map<String, Integer> fieldsIndexMap) {
+        this.values = values;
+        this.metaData = metaData;
+        this.fieldsIndexMap = fieldsIndexMap;
+    }
+
+    public GdsResultSetMetaData getMetaData() {
+        return metaData;
+    }
+
+    public int getColumnCount() {
+        return values.size();
+    }
+
+    /**
+     * @return the raw values of the row, as they arrived from the GDS
+     */
+    public List<Value> getValues() {
+        return Collections.unmodifiableList(values);
+    }
+
+    public Value getValue(int columnIndex) throws SQLException {
+        if (columnIndex < 1 || columnIndex > values.size()) {
+            throw new SQLException("Invalid column index: " + columnIndex);
+        }
+        return values.get(columnIndex - 1);
+    }
+
+    public Object getObject(int columnIndex) throws SQLException {
+        return getObjectFromValue(getValue(columnIndex), metaData.getType(columnIndex), metaData.getSubType(columnIndex));
+    }
+
+    public Object getObject(String columnLabel) throws SQLException {
+        return getObject(findColumn(columnLabel));
+    }
+
+    public int findColumn(String columnLabel) throws SQLException {
+        Integer index = fieldsIndexMap.get(columnLabel);
+        if (null == index) {
+            index = fieldsIndexMap.get(columnLabel.toLowerCase());
+        }
+        if (null == index) {
+            throw new SQLException("No such column " + columnLabel);
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return "Row" + values;
+    }
+}
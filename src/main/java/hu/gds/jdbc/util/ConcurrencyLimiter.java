@@ -0,0 +1,165 @@
+package hu.gds.jdbc.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Limits the number of requests a connection has in flight, adapting the limit to the observed latency (AIMD).
+ * <p>
+ * The limit grows by one per limit's worth of replies while the latency stays near its long-term average and
+ * the limit is actually used, and it is cut by {@link #BACKOFF_RATIO} when a reply is much slower than the
+ * average or times out. Only the requests sent after the last cut can cut it again, so one burst of slow
+ * replies counts as one overload signal. The requests over the limit wait in FIFO order without blocking
+ * a thread, the caller bounds their wait.
+ */
+public class ConcurrencyLimiter {
+    public static final int INITIAL_LIMIT_DEFAULT = 20;
+    public static final int MAX_LIMIT_DEFAULT = 256;
+
+    private static final double BACKOFF_RATIO = 0.9;
+    private static final double LATENCY_TOLERANCE = 2.0;
+    private static final double LONG_RTT_WEIGHT = 0.05;
+
+    private final int maxLimit;
+    private final Deque<Runnable> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight = 0;
+    private double longRttNanos = -1;
+    private long lastBackoffNanos = System.nanoTime();
+
+    private long queued = 0;
+    private long queueTimeouts = 0;
+    private long backoffs = 0;
+
+    /**
+     * @param initialLimit the number of requests allowed in flight before any reply arrived
+     * @param maxLimit     the upper bound of the limit, 0 or less means no limit at all
+     */
+    public ConcurrencyLimiter(int initialLimit, int maxLimit) {
+        this.maxLimit = maxLimit;
+        this.limit = maxLimit <= 0 ? Integer.MAX_VALUE : Math.max(1, Math.min(initialLimit, maxLimit));
+    }
+
+    /**
+     * Takes a slot if one is free, or queues the waiter, which is run once it got the slot.
+     *
+     * @return true, if the slot was taken, and the waiter is not queued
+     */
+    public synchronized boolean acquire(Runnable waiter) {
+        if (waiters.isEmpty() && inFlight < (int) limit) {
+            inFlight++;
+            return true;
+        }
+        waiters.addLast(waiter);
+        queued++;
+        return false;
+    }
+
+    /**
+     * Removes a queued waiter, as it gave up waiting.
+     *
+     * @return true, if the waiter was still queued, false if it already got its slot
+     */
+    public synchronized boolean cancel(Runnable waiter, boolean timedOut) {
+        if (!waiters.remove(waiter)) {
+            return false;
+        }
+        if (timedOut) {
+            queueTimeouts++;
+        }
+        return true;
+    }
+
+    /**
+     * Frees the slot of a request, and adapts the limit to its round trip.
+     *
+     * @param sentAtNanos the {@link System#nanoTime()} the request was sent at
+     * @param dropped     true, if the request timed out
+     */
+    public void release(long sentAtNanos, boolean dropped) {
+        free(true, sentAtNanos, dropped);
+    }
+
+    /**
+     * Frees the slot of a request without a reply to learn from (it was not sent, or the connection was lost).
+     */
+    public void releaseUnused() {
+        free(false, 0, false);
+    }
+
+    private void free(boolean sampled, long sentAtNanos, boolean dropped) {
+        List<Runnable> ready = new ArrayList<>();
+        synchronized (this) {
+            inFlight--;
+            if (sampled && maxLimit > 0) {
+                sample(sentAtNanos, System.nanoTime() - sentAtNanos, dropped);
+            }
+            while (!waiters.isEmpty() && inFlight < (int) limit) {
+                inFlight++;
+                ready.add(waiters.pollFirst());
+            }
+        }
+        for (Runnable waiter : ready) {
+            waiter.run();
+        }
+    }
+
+    private void sample(long sentAtNanos, long rttNanos, boolean dropped) {
+        boolean overloaded = dropped || (longRttNanos > 0 && rttNanos > longRttNanos * LATENCY_TOLERANCE);
+        if (!dropped) {
+            longRttNanos = longRttNanos < 0 ? rttNanos : longRttNanos + LONG_RTT_WEIGHT * (rttNanos - longRttNanos);
+        }
+        if (overloaded) {
+            if (sentAtNanos - lastBackoffNanos > 0) {
+                limit = Math.max(1, limit * BACKOFF_RATIO);
+                lastBackoffNanos = System.nanoTime();
+                backoffs++;
+            }
+        } else if (inFlight + 1 >= limit / 2) {
+            //only a limit in use is raised, an idle connection proves nothing about the gate
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return (int) Math.min(limit, Integer.MAX_VALUE);
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized int getQueueDepth() {
+        return waiters.size();
+    }
+
+    /**
+     * @return the number of requests that had to wait for a slot
+     */
+    public synchronized long getQueued() {
+        return queued;
+    }
+
+    /**
+     * @return the number of requests that gave up waiting for a slot
+     */
+    public synchronized long getQueueTimeouts() {
+        return queueTimeouts;
+    }
+
+    /**
+     * @return the number of times the limit was cut
+     */
+    public synchronized long getBackoffs() {
+        return backoffs;
+    }
+
+    /**
+     * @return the long-term average round trip in milliseconds, -1 before the first reply
+     */
+    public synchronized double getAverageRoundTripMillis() {
+        return longRttNanos < 0 ? -1 : longRttNanos / 1_000_000.0;
+    }
+}
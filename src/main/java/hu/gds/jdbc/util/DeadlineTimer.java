@@ -0,0 +1,32 @@
+package hu.gds.jdbc.util;
+
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Driver-wide timer for the request timeouts and deadlines.
+ *
+ * <p>A single hashed wheel serves every connection, so a pending request costs a timer slot
+ * instead of a thread parked until the reply arrives.</p>
+ */
+public class DeadlineTimer {
+    private static final HashedWheelTimer TIMER = new HashedWheelTimer(runnable -> {
+        Thread thread = new Thread(runnable, "gds-jdbc-deadline-timer");
+        thread.setDaemon(true);
+        return thread;
+    }, 10, TimeUnit.MILLISECONDS);
+
+    private DeadlineTimer() {
+    }
+
+    /**
+     * Runs the task once the given delay elapsed.
+     *
+     * @return the handle which can be used to cancel the task.
+     */
+    public static Timeout schedule(Runnable task, long delayMillis) {
+        return TIMER.newTimeout(timeout -> task.run(), Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+    }
+}
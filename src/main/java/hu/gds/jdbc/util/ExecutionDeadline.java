@@ -0,0 +1,144 @@
+package hu.gds.jdbc.util;
+
+import io.netty.util.Timeout;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * The deadline of one execution of a statement, covering the first page and every following page request.
+ * <p>
+ * The expiry is served by the shared {@link DeadlineTimer}, no thread waits for it. When the deadline expires
+ * (or the statement is cancelled) the execution is aborted: the requests in flight fail with the cause at once,
+ * which wakes the waiting thread and frees their slots, and the listeners stop the prefetch.
+ */
+public class ExecutionDeadline {
+    private static final ExecutionDeadline NONE = new ExecutionDeadline(0);
+
+    private final long deadlineNanos;
+    private final Timeout timer;
+    private final List<Consumer<SQLException>> listeners = new ArrayList<>();
+    private SQLException abortCause;
+    private boolean finished = false;
+
+    private ExecutionDeadline(int timeoutSeconds) {
+        if (0 < timeoutSeconds) {
+            this.deadlineNanos = System.nanoTime() + timeoutSeconds * 1_000_000_000L;
+            this.timer = DeadlineTimer.schedule(() -> abort(new SQLTimeoutException(
+                    "The query timeout of " + timeoutSeconds + " seconds expired")), timeoutSeconds * 1000L);
+        } else {
+            this.deadlineNanos = 0;
+            this.timer = null;
+        }
+    }
+
+    /**
+     * @param timeoutSeconds the query timeout of the statement, 0 means no deadline
+     */
+    public static ExecutionDeadline start(int timeoutSeconds) {
+        return new ExecutionDeadline(timeoutSeconds);
+    }
+
+    /**
+     * @return a deadline which never expires, and can not be aborted
+     */
+    public static ExecutionDeadline none() {
+        return NONE;
+    }
+
+    /**
+     * @return the timeout of the next request: the given timeout, or the time left until the deadline if it is less
+     */
+    public long timeoutMillis(long requestTimeoutMillis) {
+        if (null == timer) {
+            return requestTimeoutMillis;
+        }
+        long remaining = Math.max(1, (deadlineNanos - System.nanoTime()) / 1_000_000L);
+        return Math.min(requestTimeoutMillis, remaining);
+    }
+
+    /**
+     * Fails the request with the cause of the abort, if the execution is aborted while it is in flight.
+     *
+     * @return the given request
+     */
+    public <T> CompletableFuture<T> track(CompletableFuture<T> request) {
+        if (this == NONE) {
+            return request;
+        }
+        Consumer<SQLException> listener = request::completeExceptionally;
+        addListener(listener);
+        request.whenComplete((result, cause) -> removeListener(listener));
+        return request;
+    }
+
+    /**
+     * Adds a listener called with the cause when the execution is aborted, or right away if it already is.
+     */
+    public void addListener(Consumer<SQLException> listener) {
+        SQLException cause;
+        synchronized (this) {
+            cause = abortCause;
+            if (null == cause) {
+                if (!finished && this != NONE) {
+                    listeners.add(listener);
+                }
+                return;
+            }
+        }
+        listener.accept(cause);
+    }
+
+    public synchronized void removeListener(Consumer<SQLException> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Aborts the execution, unless it already finished.
+     */
+    public void abort(SQLException cause) {
+        List<Consumer<SQLException>> aborted;
+        synchronized (this) {
+            if (finished || null != abortCause || this == NONE) {
+                return;
+            }
+            abortCause = cause;
+            aborted = new ArrayList<>(listeners);
+            listeners.clear();
+        }
+        if (null != timer) {
+            timer.cancel();
+        }
+        for (Consumer<SQLException> listener : aborted) {
+            listener.accept(cause);
+        }
+    }
+
+    /**
+     * @return the cause of the abort, null if the execution was not aborted
+     */
+    public synchronized SQLException getAbortCause() {
+        return abortCause;
+    }
+
+    /**
+     * Called when the execution needs no more requests, the deadline can not abort it any more.
+     */
+    public void finish() {
+        synchronized (this) {
+            finished = true;
+            listeners.clear();
+        }
+        if (null != timer) {
+            timer.cancel();
+        }
+    }
+
+    public synchronized boolean isFinished() {
+        return finished;
+    }
+}
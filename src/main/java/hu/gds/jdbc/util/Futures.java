@@ -0,0 +1,79 @@
+package hu.gds.jdbc.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Helpers to compose the {@link CompletableFuture}s of the GDS requests with code throwing checked exceptions.
+ */
+public class Futures {
+
+    private Futures() {
+    }
+
+    @FunctionalInterface
+    public interface CheckedFunction<T, R> {
+        R apply(T value) throws Throwable;
+    }
+
+    public static <T> CompletableFuture<T> failed(Throwable cause) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.completeExceptionally(cause);
+        return future;
+    }
+
+    /**
+     * Same as {@link CompletableFuture#thenApply(java.util.function.Function)}, but the checked exceptions
+     * thrown by the function complete the returned future exceptionally.
+     */
+    public static <T, R> CompletableFuture<R> thenApply(CompletableFuture<T> future, CheckedFunction<? super T, ? extends R> function) {
+        return future.thenApply(value -> {
+            try {
+                return function.apply(value);
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new CompletionException(ex);
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #thenApply(CompletableFuture, CheckedFunction)}, but the function runs on the given executor.
+     * The futures of the requests are completed on the I/O threads, which must not run the work of the driver.
+     */
+    public static <T, R> CompletableFuture<R> thenApplyAsync(CompletableFuture<T> future, CheckedFunction<? super T, ? extends R> function,
+                                                             Executor executor) {
+        return future.thenApplyAsync(value -> {
+            try {
+                return function.apply(value);
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Throwable ex) {
+                throw new CompletionException(ex);
+            }
+        }, executor);
+    }
+
+    /**
+     * Waits for the future and rethrows the original cause of its failure.
+     */
+    public static <T> T await(CompletableFuture<T> future) throws Throwable {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            throw unwrap(ex.getCause());
+        }
+    }
+
+    public static Throwable unwrap(Throwable throwable) {
+        Throwable result = throwable;
+        while ((result instanceof CompletionException || result instanceof ExecutionException)
+                && null != result.getCause()) {
+            result = result.getCause();
+        }
+        return result;
+    }
+}
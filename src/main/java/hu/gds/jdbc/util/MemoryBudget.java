@@ -0,0 +1,126 @@
+package hu.gds.jdbc.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accounts the estimated bytes retained by the prefetched pages.
+ * <p>
+ * Every connection has its own budget whose parent is the driver-wide budget, a reservation is counted
+ * in both. The reservations are never refused (the page is already in memory when it is accounted),
+ * instead the prefetch pauses while {@link #isExhausted()} returns true.
+ * <p>
+ * The limit of the driver-wide budget is the smallest one requested by the open connections, so a connection
+ * asking for less memory is honoured. A closed connection withdraws its request and releases what its
+ * result sets left reserved.
+ */
+public class MemoryBudget {
+    public static final long DRIVER_LIMIT_DEFAULT = Runtime.getRuntime().maxMemory() / 4;
+    public static final long CONNECTION_LIMIT_DEFAULT = 64L * 1024 * 1024;
+
+    private static final MemoryBudget DRIVER = new MemoryBudget(DRIVER_LIMIT_DEFAULT, null);
+
+    private final long defaultLimit;
+    private final AtomicLong limit;
+    private final AtomicLong used = new AtomicLong();
+    private final MemoryBudget parent;
+    private final Map<MemoryBudget, Long> requestedLimits = new ConcurrentHashMap<>();
+    private boolean closed = false;
+
+    public MemoryBudget(long limit, MemoryBudget parent) {
+        this.defaultLimit = limit;
+        this.limit = new AtomicLong(limit);
+        this.parent = parent;
+    }
+
+    /**
+     * @return the budget shared by every connection of the driver
+     */
+    public static MemoryBudget driver() {
+        return DRIVER;
+    }
+
+    /**
+     * Records the limit the given child budget asks for this budget, the smallest request wins.
+     * The request is withdrawn when the child is closed.
+     */
+    public void requestLimit(MemoryBudget child, long newLimit) {
+        requestedLimits.put(child, newLimit);
+        updateLimit();
+    }
+
+    private synchronized void updateLimit() {
+        long newLimit = defaultLimit;
+        if (!requestedLimits.isEmpty()) {
+            newLimit = Long.MAX_VALUE;
+            for (Long requested : requestedLimits.values()) {
+                newLimit = Math.min(newLimit, requested);
+            }
+        }
+        limit.set(newLimit);
+    }
+
+    public synchronized void reserve(long bytes) {
+        if (closed) {
+            return;
+        }
+        used.addAndGet(bytes);
+        if (null != parent) {
+            parent.reserve(bytes);
+        }
+    }
+
+    public synchronized void release(long bytes) {
+        if (closed) {
+            return;
+        }
+        used.addAndGet(-bytes);
+        if (null != parent) {
+            parent.release(bytes);
+        }
+    }
+
+    /**
+     * Releases the bytes still reserved (by result sets never closed) from the parent and withdraws
+     * the limit requested from it. The later reservations and releases are ignored.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        long leaked = used.getAndSet(0);
+        if (null != parent) {
+            if (0 != leaked) {
+                parent.release(leaked);
+            }
+            parent.requestedLimits.remove(this);
+            parent.updateLimit();
+        }
+    }
+
+    /**
+     * @return true, if this budget or its parent has no more room
+     */
+    public boolean isExhausted() {
+        return used.get() >= limit.get()
+                || (null != parent && parent.isExhausted());
+    }
+
+    public long getLimit() {
+        return limit.get();
+    }
+
+    public long getUsed() {
+        return used.get();
+    }
+
+    @Override
+    public String toString() {
+        return "MemoryBudget{" +
+                "limit=" + limit.get() +
+                ", used=" + used.get() +
+                '}';
+    }
+}
@@ -0,0 +1,165 @@
+package hu.gds.jdbc.util;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Driver-wide executor of the page prefetch steps of the result sets.
+ * <p>
+ * Every step (processing an arrived page and sending the request of the next one) is a separate task,
+ * and the tasks are served in FIFO order, so the open result sets share the threads fairly.
+ * The steps do not block, the pool is bounded by the largest {@code prefetch.pool.size} of the connections.
+ * On Java 21 or newer the {@code prefetch.virtual.threads} property switches the steps to virtual threads.
+ */
+public class PrefetchScheduler {
+    public static final int POOL_SIZE_DEFAULT = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+    private static final Logger LOG = Logger.getLogger(PrefetchScheduler.class.getName());
+
+    private static final AtomicInteger threadCounter = new AtomicInteger();
+    private static final ThreadPoolExecutor pool = createPool(POOL_SIZE_DEFAULT);
+    private static volatile ExecutorService virtualThreadExecutor;
+
+    private static final AtomicLong submittedTasks = new AtomicLong();
+    private static final AtomicLong completedTasks = new AtomicLong();
+    private static final AtomicInteger runningTasks = new AtomicInteger();
+
+    private PrefetchScheduler() {
+    }
+
+    private static ThreadPoolExecutor createPool(int poolSize) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(poolSize, poolSize,
+                60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "gds-jdbc-prefetch-" + threadCounter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Applies the settings of a new connection. The pool is never shrunk, as the result sets of the
+     * other connections are still served by it.
+     */
+    public static synchronized void configure(int poolSize, boolean useVirtualThreads) {
+        if (poolSize > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(poolSize);
+            pool.setCorePoolSize(poolSize);
+        }
+        if (useVirtualThreads && null == virtualThreadExecutor) {
+            virtualThreadExecutor = createVirtualThreadExecutor();
+        }
+    }
+
+    /*
+        Virtual threads are only available from Java 21, the driver is compiled for Java 8.
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            LOG.log(Level.INFO, "Virtual threads are not available, the prefetch pool is used instead");
+            return null;
+        }
+    }
+
+    public static Executor executor() {
+        return PrefetchScheduler::execute;
+    }
+
+    public static void execute(Runnable task) {
+        submittedTasks.incrementAndGet();
+        Runnable counted = () -> {
+            runningTasks.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                runningTasks.decrementAndGet();
+                completedTasks.incrementAndGet();
+            }
+        };
+        ExecutorService virtual = virtualThreadExecutor;
+        if (null != virtual) {
+            virtual.execute(counted);
+        } else {
+            pool.execute(counted);
+        }
+    }
+
+    public static Statistics getStatistics() {
+        long submitted = submittedTasks.get();
+        long completed = completedTasks.get();
+        int running = runningTasks.get();
+        return new Statistics(null != virtualThreadExecutor,
+                pool.getMaximumPoolSize(),
+                pool.getPoolSize(),
+                running,
+                Math.max(0, submitted - completed - running),
+                completed);
+    }
+
+    /**
+     * Point in time snapshot of the scheduler.
+     */
+    public static class Statistics {
+        private final boolean virtualThreads;
+        private final int maximumPoolSize;
+        private final int poolSize;
+        private final int runningTasks;
+        private final long queuedTasks;
+        private final long completedTasks;
+
+        Statistics(boolean virtualThreads, int maximumPoolSize, int poolSize, int runningTasks, long queuedTasks, long completedTasks) {
+            this.virtualThreads = virtualThreads;
+            this.maximumPoolSize = maximumPoolSize;
+            this.poolSize = poolSize;
+            this.runningTasks = runningTasks;
+            this.queuedTasks = queuedTasks;
+            this.completedTasks = completedTasks;
+        }
+
+        public boolean isVirtualThreads() {
+            return virtualThreads;
+        }
+
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        public int getRunningTasks() {
+            return runningTasks;
+        }
+
+        public long getQueuedTasks() {
+            return queuedTasks;
+        }
+
+        public long getCompletedTasks() {
+            return completedTasks;
+        }
+
+        @Override
+        public String toString() {
+            return "PrefetchScheduler.Statistics{" +
+                    "virtualThreads=" + virtualThreads +
+                    ", maximumPoolSize=" + maximumPoolSize +
+                    ", poolSize=" + poolSize +
+                    ", runningTasks=" + runningTasks +
+                    ", queuedTasks=" + queuedTasks +
+                    ", completedTasks=" + completedTasks +
+                    '}';
+        }
+    }
+}
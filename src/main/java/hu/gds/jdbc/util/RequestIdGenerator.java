@@ -0,0 +1,23 @@
+package hu.gds.jdbc.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates the message ids of the requests sent on one connection.
+ *
+ * <p>The ids consist of a random per-connection prefix and a sequence number, so they are unique
+ * without paying for {@link java.util.UUID#randomUUID()} (and its SecureRandom) on every request.</p>
+ */
+public class RequestIdGenerator {
+    private final String prefix;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public RequestIdGenerator() {
+        this.prefix = Long.toHexString(ThreadLocalRandom.current().nextLong()) + "-";
+    }
+
+    public String nextId() {
+        return prefix + Long.toHexString(sequence.incrementAndGet());
+    }
+}
@@ -0,0 +1,123 @@
+package hu.gds.jdbc;
+
+import hu.gds.jdbc.util.Futures;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class AsyncAnalysisTest {
+    private static final String UPDATE = "UPDATE multi_event SET name = 'changed' WHERE id LIKE 'ABC%'";
+
+    private final List<String> schemaQueries = new CopyOnWriteArrayList<>();
+    private final CompletableFuture<ResultSet> schemaLookup = new CompletableFuture<>();
+    private GdsJdbcConnection connection;
+    private GdsStatement statement;
+
+    @Before
+    public void setUp() {
+        Properties info = new Properties();
+        //a user of its own, the schema is shared by the connections of the same gate and user
+        GdsClientURI uri = new GdsClientURI("jdbc:gds:localhost:8888/gate?user=async" + System.nanoTime(), info);
+        connection = new GdsJdbcConnection(uri, null, null, info) {
+            @Override
+            public Statement createStatement() {
+                return new GdsStatement(this) {
+                    @Override
+                    public CompletableFuture<ResultSet> executeQueryAsync(String sql) {
+                        schemaQueries.add(sql);
+                        return schemaLookup;
+                    }
+                };
+            }
+        };
+        statement = new GdsStatement(connection);
+    }
+
+    private static ResultSet primaryKeyRows(String idField) {
+        boolean[] read = new boolean[1];
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            boolean hasRow = !read[0];
+                            read[0] = true;
+                            return hasRow;
+                        case "getString":
+                            return "id_field".equals(args[0]) ? idField : null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    @Test
+    public void doesNotWaitForTheSchemaLookupOfAnUpdate() throws Exception {
+        CompletableFuture<Integer> update = statement.executeUpdateAsync(UPDATE);
+
+        assertFalse(update.isDone());
+        assertEquals(1, schemaQueries.size());
+        assertTrue(schemaQueries.get(0), schemaQueries.get(0).contains("@gds.config.store.tables"));
+
+        schemaLookup.complete(primaryKeyRows("id"));
+
+        //the connection has no GDS behind it, so the UPDATE itself fails once it is sent
+        try {
+            update.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {
+        }
+        assertEquals(Collections.singletonList("id"), connection.getSchemaCache().getCachedPrimaryKeys("multi_event"));
+        assertEquals(1, schemaQueries.size());
+    }
+
+    @Test
+    public void failsWithTheSchemaLookup() throws Exception {
+        CompletableFuture<Integer> update = statement.executeUpdateAsync(UPDATE);
+        assertFalse(update.isDone());
+
+        schemaLookup.completeExceptionally(new SQLException("lookup failed"));
+
+        try {
+            update.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {
+            assertEquals("lookup failed", Futures.unwrap(expected).getMessage());
+        }
+        assertNull(connection.getSchemaCache().getCachedPrimaryKeys("multi_event"));
+    }
+
+    @Test
+    public void usesTheCachedPrimaryKeysOnTheCallingThread() throws Exception {
+        CompletableFuture<Integer> first = statement.executeUpdateAsync(UPDATE);
+        schemaLookup.complete(primaryKeyRows("id"));
+        try {
+            first.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException ignored) {
+        }
+
+        CompletableFuture<Integer> second = statement.executeUpdateAsync(UPDATE);
+
+        assertTrue(second.isDone());
+        assertEquals(1, schemaQueries.size());
+    }
+
+    @Test
+    public void doesNotLookUpTheSchemaOfAQuery() {
+        statement.executeQueryAsync("SELECT * FROM multi_event WHERE id = 'ABC'");
+
+        assertTrue(schemaQueries.isEmpty());
+    }
+}
@@ -0,0 +1,116 @@
+package hu.gds.jdbc;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BatchExecutionTest {
+
+    private static AnalyzedStatement dml(String sql, int statementCount) {
+        return new AnalyzedStatement(sql, statementCount, false, true, false, false, null,
+                Collections.emptyList(), null, Collections.emptySet());
+    }
+
+    private static AnalyzedStatement attachmentInsert(String sql) {
+        return new AnalyzedStatement(sql, 1, false, true, true, false, null,
+                Collections.emptyList(), Collections.emptyMap(), Collections.emptySet());
+    }
+
+    private static AnalyzedStatement row(String table, String values) {
+        String prefix = "INSERT INTO " + table + " (id, name) VALUES ";
+        String sql = prefix + values;
+        return dml(sql, 1).withValuesRow(sql, prefix.length(), sql.length());
+    }
+
+    private static List<int[]> split(List<AnalyzedStatement> entries, int batchSize) {
+        List<int[]> chunks = new ArrayList<>();
+        for (BatchExecution.Chunk chunk : new BatchExecution(null, entries, batchSize).getChunks()) {
+            chunks.add(new int[]{chunk.getStart(), chunk.getEnd(), chunk.getStatementCount(), chunk.isCoalesced() ? 1 : 0});
+        }
+        return chunks;
+    }
+
+    private static void assertChunk(int[] chunk, int start, int end, int statementCount, boolean coalesced) {
+        assertArrayEquals(Arrays.toString(chunk), new int[]{start, end, statementCount, coalesced ? 1 : 0}, chunk);
+    }
+
+    @Test
+    public void coalescesTheRowsOfTheSameInsert() {
+        List<int[]> chunks = split(Arrays.asList(
+                row("t", "('a', 'x')"),
+                row("t", "('b', 'y')"),
+                row("t", "('c', 'z')")), 10);
+
+        assertEquals(1, chunks.size());
+        assertChunk(chunks.get(0), 0, 3, 1, true);
+    }
+
+    @Test
+    public void startsNewCoalescedChunkForAnotherInsertOrAtTheBatchSize() {
+        List<int[]> chunks = split(Arrays.asList(
+                row("t", "('a', 'x')"),
+                row("t", "('b', 'y')"),
+                row("t", "('c', 'z')"),
+                row("u", "('d', 'w')")), 2);
+
+        assertEquals(3, chunks.size());
+        assertChunk(chunks.get(0), 0, 2, 1, true);
+        assertChunk(chunks.get(1), 2, 3, 1, true);
+        assertChunk(chunks.get(2), 3, 4, 1, true);
+    }
+
+    @Test
+    public void packsTheStatementsUpToTheBatchSize() {
+        List<int[]> chunks = split(Arrays.asList(
+                dml("UPDATE t SET name = 'a' WHERE id = '1'", 1),
+                dml("UPDATE t SET name = 'b' WHERE id = '2'", 1),
+                dml("UPDATE t SET name = 'c' WHERE id = '3';UPDATE t SET name = 'd' WHERE id = '4'", 2),
+                dml("UPDATE t SET name = 'e' WHERE id = '5'", 1)), 3);
+
+        assertEquals(2, chunks.size());
+        assertChunk(chunks.get(0), 0, 2, 2, false);
+        assertChunk(chunks.get(1), 2, 4, 3, false);
+    }
+
+    @Test
+    public void sendsTheNonPackableEntriesAlone() {
+        List<int[]> chunks = split(Arrays.asList(
+                dml("UPDATE t SET name = 'a' WHERE id = '1'", 1),
+                attachmentInsert("INSERT INTO t-@attachment (id, meta, data) VALUES ('1', 'image/png', 0x00)"),
+                dml("UPDATE t SET name = 'b' WHERE id = '2'", 1),
+                dml("UPDATE t SET name = 'c' WHERE id = '3'", 1)), 10);
+
+        assertEquals(3, chunks.size());
+        assertChunk(chunks.get(0), 0, 1, 1, false);
+        assertChunk(chunks.get(1), 1, 2, 1, false);
+        assertChunk(chunks.get(2), 2, 4, 2, false);
+    }
+
+    @Test
+    public void keepsTheRowsApartFromThePackedStatements() {
+        List<int[]> chunks = split(Arrays.asList(
+                dml("UPDATE t SET name = 'a' WHERE id = '1'", 1),
+                row("t", "('b', 'y')"),
+                row("t", "('c', 'z')"),
+                dml("UPDATE t SET name = 'd' WHERE id = '4'", 1)), 10);
+
+        assertEquals(3, chunks.size());
+        assertChunk(chunks.get(0), 0, 1, 1, false);
+        assertChunk(chunks.get(1), 1, 3, 1, true);
+        assertChunk(chunks.get(2), 3, 4, 1, false);
+    }
+
+    @Test
+    public void coalescedStatementHasEveryRow() {
+        AnalyzedStatement coalesced = AnalyzedStatement.coalesce(Arrays.asList(
+                row("t", "('a', 'x')"),
+                row("t", "('b', 'y')")));
+
+        assertEquals("INSERT INTO t (id, name) VALUES ('a', 'x'), ('b', 'y')", coalesced.sql);
+    }
+}
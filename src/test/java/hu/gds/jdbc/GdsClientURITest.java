@@ -0,0 +1,51 @@
+package hu.gds.jdbc;
+
+import hu.gds.jdbc.error.GdsException;
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class GdsClientURITest {
+    private static final String URL = "jdbc:gds:localhost:8888/gate?user=settings";
+
+    @Test
+    public void rejectsAnInvalidSettingBeforeConnecting() {
+        Properties info = new Properties();
+        info.setProperty(DriverPropertyInfoHelper.STATEMENT_CACHE_SIZE, "many");
+
+        try {
+            new GdsClientURI(URL, info);
+            fail();
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains(DriverPropertyInfoHelper.STATEMENT_CACHE_SIZE));
+        }
+    }
+
+    @Test
+    public void readsTheConnectionSettings() {
+        Properties info = new Properties();
+        info.setProperty(DriverPropertyInfoHelper.SCHEMA_CACHE_TTL, "0");
+        info.setProperty(DriverPropertyInfoHelper.SCHEMA_SNAPSHOT_DIR, " ");
+
+        GdsClientURI uri = new GdsClientURI(URL + "&" + DriverPropertyInfoHelper.PREFETCH_MEMORY_CONNECTION + "=1024", info);
+
+        assertEquals(0, uri.schemaCacheTtl);
+        assertEquals(1024, uri.prefetchMemoryConnection);
+        assertNull(uri.schemaSnapshotDir);
+    }
+
+    @Test
+    public void reportsTheMissingHostsWithEveryGatePolicy() throws Throwable {
+        for (String policy : GateBalancer.POLICY_CHOICES) {
+            GdsClientURI uri = new GdsClientURI("jdbc:gds:/gate?user=settings&gate.policy=" + policy, new Properties());
+            try {
+                uri.connectToGate(null);
+                fail(policy);
+            } catch (GdsException expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().startsWith("No host given in the url"));
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package hu.gds.jdbc;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class PreparedStatementTemplateTest {
+    private GdsStatement statement;
+
+    @Before
+    public void setUp() {
+        Properties info = new Properties();
+        GdsClientURI uri = new GdsClientURI("jdbc:gds:localhost:8888/gate?user=template", info);
+        statement = new GdsStatement(new GdsJdbcConnection(uri, null, null, info));
+    }
+
+    private PreparedStatementTemplate template(String sql) {
+        return PreparedStatementTemplate.create(statement, sql.split("\\?", -1), 0,
+                tableName -> Collections.singletonList("id"));
+    }
+
+    @Test
+    public void bindsTheParametersIntoTheirSlots() throws Exception {
+        PreparedStatementTemplate template = template("SELECT * FROM multi_event WHERE id = ? AND count > ?");
+        assertNotNull(template);
+
+        AnalyzedStatement bound = template.bind(new String[]{"'ABC'", "10"});
+
+        assertTrue(bound.dqlFound);
+        assertTrue(bound.sql, bound.sql.contains("id = 'ABC'"));
+        assertTrue(bound.sql, bound.sql.contains("count > 10"));
+        assertFalse(bound.sql, bound.sql.contains("?"));
+    }
+
+    @Test
+    public void skipsTheParametersOfTheRemovedReadOnlyColumns() throws Exception {
+        PreparedStatementTemplate template = template("INSERT INTO multi_event (id, \"@timestamp\", name) VALUES (?, ?, ?)");
+        assertNotNull(template);
+
+        AnalyzedStatement bound = template.bind(new String[]{"'ABC'", "12345", "'name'"});
+
+        assertFalse(bound.sql, bound.sql.contains("12345"));
+        assertTrue(bound.sql, bound.sql.contains("'ABC', 'name'"));
+    }
+
+    @Test
+    public void keepsTheLiteralsContainingParameterMarkers() throws Exception {
+        PreparedStatementTemplate template = template("INSERT INTO multi_event (id, name) VALUES (?, ?)");
+        assertNotNull(template);
+
+        AnalyzedStatement bound = template.bind(new String[]{"'?1'", "'?2 and ?'"});
+
+        assertTrue(bound.sql, bound.sql.contains("('?1', '?2 and ?')"));
+    }
+
+    @Test
+    public void rendersNullTtlAsMaxLong() throws Exception {
+        PreparedStatementTemplate template = template("INSERT INTO multi_event (id, \"@ttl\") VALUES (?, ?)");
+        assertNotNull(template);
+
+        AnalyzedStatement bound = template.bind(new String[]{"'ABC'", "null"});
+        assertTrue(bound.sql, bound.sql.contains(Long.toString(Long.MAX_VALUE)));
+        assertFalse(bound.sql, bound.sql.contains("null"));
+
+        AnalyzedStatement boundTtl = template.bind(new String[]{"'ABC'", "1000"});
+        assertTrue(boundTtl.sql, boundTtl.sql.contains("'ABC', 1000"));
+    }
+
+    @Test
+    public void nullParameterOutsideTtlIsKept() throws Exception {
+        PreparedStatementTemplate template = template("INSERT INTO multi_event (id, name) VALUES (?, ?)");
+        assertNotNull(template);
+
+        AnalyzedStatement bound = template.bind(new String[]{"'ABC'", "null"});
+
+        assertTrue(bound.sql, bound.sql.contains("'ABC', null"));
+    }
+
+    @Test(expected = hu.gds.jdbc.error.InvalidParameterException.class)
+    public void unboundParameterIsRejected() throws Exception {
+        PreparedStatementTemplate template = template("INSERT INTO multi_event (id, name) VALUES (?, ?)");
+        assertNotNull(template);
+
+        template.bind(new String[]{"'ABC'", null});
+    }
+}
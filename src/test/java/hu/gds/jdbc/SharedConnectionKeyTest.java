@@ -0,0 +1,42 @@
+package hu.gds.jdbc;
+
+import org.junit.Test;
+
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+public class SharedConnectionKeyTest {
+
+    private static String key(String options) throws Exception {
+        return GdsConnection.sharedKey(new GdsClientURI("jdbc:gds:localhost:8888/gate?multiplex=true&" + options, new Properties()));
+    }
+
+    @Test
+    public void sharesTheConnectionOfTheSameSettings() throws Exception {
+        assertEquals(key("user=shared&password=secret"), key("user=shared&password=secret"));
+    }
+
+    @Test
+    public void doesNotKeepThePassword() throws Exception {
+        String key = key("user=shared&password=secret&keyStorePassword=changeit");
+
+        assertFalse(key, key.contains("secret"));
+        assertFalse(key, key.contains("changeit"));
+        assertNotEquals(key, key("user=shared&password=other&keyStorePassword=changeit"));
+    }
+
+    @Test
+    public void separatesTheConnectionsOfDifferentSettings() throws Exception {
+        String key = key("user=shared");
+
+        assertNotEquals(key, key("user=shared&reconnect=true"));
+        assertNotEquals(key, key("user=shared&reconnect.attempts=3"));
+        assertNotEquals(key, key("user=shared&timeout=500"));
+        assertNotEquals(key, key("user=shared&network.timeout=500"));
+        assertNotEquals(key, key("user=shared&concurrency.limit.initial=5"));
+        assertNotEquals(key, key("user=shared&concurrency.limit.max=50"));
+        assertNotEquals(key, key("user=shared&concurrency.queue.timeout=500"));
+        assertNotEquals(key, key("user=shared&gate.policy=round-robin"));
+    }
+}
@@ -0,0 +1,67 @@
+package hu.gds.jdbc;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class StatementCacheTest {
+
+    private static AnalyzedStatement analyzed(String sql) {
+        return new AnalyzedStatement(sql, 1, true, false, false, false, "table",
+                Collections.emptyList(), Collections.emptyMap(), Collections.emptySet());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntry() {
+        StatementCache cache = new StatementCache(2);
+        String first = StatementCache.key("SELECT * FROM a", 0);
+        String second = StatementCache.key("SELECT * FROM b", 0);
+        String third = StatementCache.key("SELECT * FROM c", 0);
+        cache.put(first, analyzed("SELECT * FROM a"));
+        cache.put(second, analyzed("SELECT * FROM b"));
+        //touching the first makes the second the eldest
+        assertNotNull(cache.get(first));
+        cache.put(third, analyzed("SELECT * FROM c"));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNotNull(cache.get(first));
+        assertNull(cache.get(second));
+        assertNotNull(cache.get(third));
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void maxRowsIsPartOfTheKey() {
+        StatementCache cache = new StatementCache(4);
+        cache.put(StatementCache.key("SELECT * FROM a", 0), analyzed("SELECT * FROM a"));
+
+        assertNull(cache.get(StatementCache.key("SELECT * FROM a", 10)));
+        assertNotNull(cache.get(StatementCache.key("SELECT * FROM a", 0)));
+    }
+
+    @Test
+    public void zeroSizeCacheKeepsNothing() {
+        StatementCache cache = new StatementCache(0);
+        String key = StatementCache.key("SELECT * FROM a", 0);
+        cache.put(key, analyzed("SELECT * FROM a"));
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get(key));
+        assertEquals(0, cache.getEvictions());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void clearDropsEveryEntry() {
+        StatementCache cache = new StatementCache(4);
+        cache.put(StatementCache.key("SELECT * FROM a", 0), analyzed("SELECT * FROM a"));
+        cache.put(StatementCache.key("SELECT * FROM b", 0), analyzed("SELECT * FROM b"));
+        cache.clear();
+
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,137 @@
+package hu.gds.jdbc.metainfo;
+
+import hu.arheu.gds.message.data.FieldValueType;
+import hu.arheu.gds.message.data.impl.FieldHolderImpl;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class SharedSchemaTest {
+    private static final String KEY = "localhost:8888/gate|user";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static SharedSchema.TableListing listing() {
+        SharedSchema.TableListing listing = new SharedSchema.TableListing();
+        listing.primaryKeys.put("multi_event", Collections.singletonList("id"));
+        listing.fields.put("multi_event", "id,name,count");
+        listing.primaryKeys.put("empty_event", Collections.emptyList());
+        listing.fields.put("empty_event", "id");
+        return listing;
+    }
+
+    private static GdsTable table() {
+        GdsTable table = new GdsTable("multi_event", SchemaCache.TABLE_TYPE, false);
+        table.addColumn(SchemaCache.createColumn(table, new FieldHolderImpl("id", FieldValueType.KEYWORD, ""), "id", 1));
+        table.addColumn(SchemaCache.createColumn(table, new FieldHolderImpl("name", FieldValueType.TEXT, ""), "name", 2));
+        table.addColumn(SchemaCache.createColumn(table, new FieldHolderImpl("count", FieldValueType.LONG, ""), "count", 3));
+        return table;
+    }
+
+    private Path writeSnapshot(String key) throws Exception {
+        Path dir = folder.getRoot().toPath();
+        SharedSchema schema = new SharedSchema(key, dir);
+        synchronized (schema) {
+            schema.applyTableListing(listing());
+            schema.tables.put("multi_event", new SharedSchema.Cached<>(table()));
+        }
+        schema.writeSnapshot();
+        assertTrue(Files.isRegularFile(schema.getSnapshotFile()));
+        return schema.getSnapshotFile();
+    }
+
+    @Test
+    public void loadsTheWrittenSnapshot() throws Exception {
+        writeSnapshot(KEY);
+
+        SharedSchema loaded = new SharedSchema(KEY, folder.getRoot().toPath());
+
+        assertEquals(Arrays.asList("empty_event", "multi_event"), loaded.tableNames.value);
+        assertEquals(Collections.singletonList("id"), loaded.primaryKeys.get("multi_event").value);
+        assertEquals(Collections.emptyList(), loaded.primaryKeys.get("empty_event").value);
+        assertNull(loaded.tables.get("empty_event"));
+        GdsTable table = loaded.tables.get("multi_event").value;
+        assertEquals(3, table.getColumns().size());
+        assertEquals("name", table.getColumnsByOrdinal().get(2).getColumnName());
+        assertEquals(FieldValueType.LONG, table.getColumn("count").getColumn().getFieldType());
+    }
+
+    @Test
+    public void ignoresTheSnapshotOfAnotherKey() throws Exception {
+        String otherKey = "otherhost:8888/gate|user";
+        Path snapshot = writeSnapshot(KEY);
+        Files.copy(snapshot, new SharedSchema(otherKey, folder.getRoot().toPath()).getSnapshotFile());
+
+        SharedSchema loaded = new SharedSchema(otherKey, folder.getRoot().toPath());
+
+        assertNull(loaded.tableNames);
+        assertTrue(loaded.primaryKeys.isEmpty());
+        assertTrue(loaded.tables.isEmpty());
+    }
+
+    @Test
+    public void ignoresTheSnapshotOfAnotherVersion() throws Exception {
+        Path snapshot = writeSnapshot(KEY);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        ByteBuffer.wrap(bytes).putInt(0, ByteBuffer.wrap(bytes).getInt(0) + 1);
+        Files.write(snapshot, bytes);
+
+        SharedSchema loaded = new SharedSchema(KEY, folder.getRoot().toPath());
+
+        assertNull(loaded.tableNames);
+        assertTrue(loaded.tables.isEmpty());
+    }
+
+    @Test
+    public void ignoresTheTruncatedSnapshot() throws Exception {
+        Path snapshot = writeSnapshot(KEY);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        Files.write(snapshot, Arrays.copyOf(bytes, bytes.length / 2));
+
+        SharedSchema loaded = new SharedSchema(KEY, folder.getRoot().toPath());
+
+        assertNull(loaded.tableNames);
+        assertTrue(loaded.primaryKeys.isEmpty());
+        assertTrue(loaded.tables.isEmpty());
+    }
+
+    @Test
+    public void ignoresTheSnapshotOfACorruptLength() throws Exception {
+        Path snapshot = writeSnapshot(KEY);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        //version, key, table count, then the length of the name of the first table
+        int nameLength = 4 + 4 + KEY.getBytes(StandardCharsets.UTF_8).length + 4;
+        ByteBuffer.wrap(bytes).putInt(nameLength, Integer.MAX_VALUE - 8);
+        Files.write(snapshot, bytes);
+
+        SharedSchema loaded = new SharedSchema(KEY, folder.getRoot().toPath());
+
+        assertNull(loaded.tableNames);
+        assertTrue(loaded.primaryKeys.isEmpty());
+        assertTrue(loaded.tables.isEmpty());
+    }
+
+    @Test
+    public void ignoresTheSnapshotOfACorruptCount() throws Exception {
+        Path snapshot = writeSnapshot(KEY);
+        byte[] bytes = Files.readAllBytes(snapshot);
+        int tableCount = 4 + 4 + KEY.getBytes(StandardCharsets.UTF_8).length;
+        ByteBuffer.wrap(bytes).putInt(tableCount, Integer.MAX_VALUE);
+        Files.write(snapshot, bytes);
+
+        SharedSchema loaded = new SharedSchema(KEY, folder.getRoot().toPath());
+
+        assertNull(loaded.tableNames);
+        assertTrue(loaded.tables.isEmpty());
+    }
+}
@@ -0,0 +1,80 @@
+package hu.gds.jdbc.resultset;
+
+import hu.gds.jdbc.GdsAsyncStatement;
+import hu.gds.jdbc.GdsClientURI;
+import hu.gds.jdbc.GdsFlow;
+import hu.gds.jdbc.GdsJdbcConnection;
+import hu.gds.jdbc.error.ClosedResultSetException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+public class QueryRowPublisherTest {
+    private Statement statement;
+    private final List<Throwable> errors = new CopyOnWriteArrayList<>();
+    private final List<String> signals = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws SQLException {
+        Properties info = new Properties();
+        GdsClientURI uri = new GdsClientURI("jdbc:gds:localhost:8888/gate?user=publisher", info);
+        statement = new GdsJdbcConnection(uri, null, null, info).createStatement();
+    }
+
+    private GdsFlow.Subscriber<Row> subscriber() {
+        return new GdsFlow.Subscriber<Row>() {
+            @Override
+            public void onSubscribe(GdsFlow.Subscription subscription) {
+                signals.add("subscribe");
+            }
+
+            @Override
+            public void onNext(Row item) {
+                signals.add("next");
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                signals.add("error");
+                errors.add(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                signals.add("complete");
+            }
+        };
+    }
+
+    @Test
+    public void endsTheStreamWithAnErrorWhenTheStatementIsClosed() throws Exception {
+        GdsFlow.Publisher<Row> rows = ((GdsAsyncStatement) statement).executeQueryPublisher("SELECT * FROM multi_event");
+        rows.subscribe(subscriber());
+        assertEquals(1, signals.size());
+
+        statement.close();
+
+        assertEquals("subscribe", signals.get(0));
+        assertEquals("error", signals.get(1));
+        assertEquals(2, signals.size());
+        assertTrue(errors.get(0) instanceof ClosedResultSetException);
+    }
+
+    @Test
+    public void endsTheStreamWithAnErrorWhenTheStatementIsCancelled() throws Exception {
+        GdsFlow.Publisher<Row> rows = ((GdsAsyncStatement) statement).executeQueryPublisher("SELECT * FROM multi_event");
+        rows.subscribe(subscriber());
+
+        statement.cancel();
+
+        assertEquals(2, signals.size());
+        assertEquals("HY008", ((SQLException) errors.get(0)).getSQLState());
+    }
+}
@@ -0,0 +1,185 @@
+package hu.gds.jdbc.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConcurrencyLimiterTest {
+
+    //a send time of a reply taking about a millisecond, well within the tolerance of the average
+    private static long millisecondAgo() {
+        return System.nanoTime() - 1_000_000L;
+    }
+
+    //a send time after the given one, so it counts as sent after the last cut of the limit
+    private static long after(long nanos) {
+        long now = System.nanoTime();
+        while (now - nanos <= 0) {
+            now = System.nanoTime();
+        }
+        return now;
+    }
+
+    @Test
+    public void queuesOverTheLimitInFifoOrder() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 10);
+        List<String> granted = new ArrayList<>();
+
+        assertTrue(limiter.acquire(() -> granted.add("first")));
+        assertTrue(limiter.acquire(() -> granted.add("second")));
+        assertFalse(limiter.acquire(() -> granted.add("third")));
+        assertFalse(limiter.acquire(() -> granted.add("fourth")));
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(2, limiter.getQueueDepth());
+        assertEquals(2, limiter.getQueued());
+
+        limiter.releaseUnused();
+        assertEquals(Arrays.asList("third"), granted);
+        limiter.releaseUnused();
+        assertEquals(Arrays.asList("third", "fourth"), granted);
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(0, limiter.getQueueDepth());
+    }
+
+    @Test
+    public void increasesTheLimitAdditivelyWhileItIsUsed() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 6);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.acquire(() -> {
+            }));
+        }
+        //one slot cycles while the others stay in flight, every reply is as fast as the average
+        for (int i = 0; i < 4; i++) {
+            assertTrue(limiter.acquire(() -> {
+            }));
+            limiter.release(millisecondAgo(), false);
+        }
+        assertEquals(4, limiter.getLimit());
+        assertTrue(limiter.acquire(() -> {
+        }));
+        limiter.release(millisecondAgo(), false);
+        assertEquals(5, limiter.getLimit());
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.acquire(() -> {
+            }));
+            limiter.release(millisecondAgo(), false);
+        }
+        assertEquals(6, limiter.getLimit());
+        assertEquals(0, limiter.getBackoffs());
+    }
+
+    @Test
+    public void idleLimitIsNotIncreased() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 20);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.acquire(() -> {
+            }));
+            limiter.release(millisecondAgo(), false);
+        }
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    public void decreasesTheLimitMultiplicativelyOncePerBurst() {
+        long created = System.nanoTime();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 20);
+        long firstSent = after(created);
+        long secondSent = after(created);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(limiter.acquire(() -> {
+            }));
+        }
+
+        limiter.release(after(firstSent), true);
+        assertEquals(9, limiter.getLimit());
+        //sent before the cut, the same overload
+        limiter.release(secondSent, true);
+        assertEquals(9, limiter.getLimit());
+        assertEquals(1, limiter.getBackoffs());
+
+        limiter.release(after(System.nanoTime()), true);
+        assertEquals(8, limiter.getLimit());
+        assertEquals(2, limiter.getBackoffs());
+    }
+
+    @Test
+    public void slowReplyDecreasesTheLimit() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(10, 20);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.acquire(() -> {
+            }));
+            limiter.release(millisecondAgo(), false);
+        }
+        assertEquals(10, limiter.getLimit());
+
+        assertTrue(limiter.acquire(() -> {
+        }));
+        long sent = System.nanoTime();
+        Thread.sleep(50);
+        limiter.release(sent, false);
+
+        assertEquals(9, limiter.getLimit());
+        assertEquals(1, limiter.getBackoffs());
+    }
+
+    @Test
+    public void neverDecreasesBelowOne() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 10);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.acquire(() -> {
+            }));
+            limiter.release(after(System.nanoTime()), true);
+        }
+        assertEquals(1, limiter.getLimit());
+    }
+
+    @Test
+    public void cancelledWaiterGivesUpItsPlace() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 10);
+        List<String> granted = new ArrayList<>();
+        Runnable timedOut = () -> granted.add("timed out");
+        Runnable next = () -> granted.add("next");
+        assertTrue(limiter.acquire(() -> {
+        }));
+        assertFalse(limiter.acquire(timedOut));
+        assertFalse(limiter.acquire(next));
+
+        assertTrue(limiter.cancel(timedOut, true));
+        assertFalse(limiter.cancel(timedOut, true));
+        assertEquals(1, limiter.getQueueTimeouts());
+
+        limiter.releaseUnused();
+        assertEquals(Arrays.asList("next"), granted);
+        //already granted, it is not queued any more
+        assertFalse(limiter.cancel(next, false));
+        assertEquals(1, limiter.getQueueTimeouts());
+    }
+
+    @Test
+    public void unusedSlotIsNotSampled() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(5, 10);
+        assertTrue(limiter.acquire(() -> {
+        }));
+        limiter.releaseUnused();
+
+        assertEquals(-1, limiter.getAverageRoundTripMillis(), 0);
+        assertEquals(5, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void zeroMaxLimitMeansNoLimit() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 0);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(limiter.acquire(() -> {
+            }));
+        }
+        limiter.release(after(System.nanoTime()), true);
+        assertEquals(Integer.MAX_VALUE, limiter.getLimit());
+    }
+}
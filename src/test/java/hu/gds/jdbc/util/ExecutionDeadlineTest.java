@@ -0,0 +1,142 @@
+package hu.gds.jdbc.util;
+
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.*;
+
+public class ExecutionDeadlineTest {
+
+    @Test
+    public void abortCallsTheListenersOnce() {
+        ExecutionDeadline deadline = ExecutionDeadline.start(0);
+        List<SQLException> causes = new ArrayList<>();
+        deadline.addListener(causes::add);
+        SQLException cancelled = new SQLException("cancelled");
+
+        deadline.abort(cancelled);
+        deadline.abort(new SQLException("again"));
+
+        assertEquals(1, causes.size());
+        assertSame(cancelled, causes.get(0));
+        assertSame(cancelled, deadline.getAbortCause());
+    }
+
+    @Test
+    public void listenerAddedAfterTheAbortIsCalledAtOnce() {
+        ExecutionDeadline deadline = ExecutionDeadline.start(0);
+        SQLException cancelled = new SQLException("cancelled");
+        deadline.abort(cancelled);
+
+        List<SQLException> causes = new ArrayList<>();
+        deadline.addListener(causes::add);
+
+        assertEquals(1, causes.size());
+        assertSame(cancelled, causes.get(0));
+    }
+
+    @Test
+    public void removedListenerIsNotCalled() {
+        ExecutionDeadline deadline = ExecutionDeadline.start(0);
+        List<SQLException> causes = new ArrayList<>();
+        Consumer<SQLException> listener = causes::add;
+        deadline.addListener(listener);
+        deadline.removeListener(listener);
+
+        deadline.abort(new SQLException("cancelled"));
+
+        assertTrue(causes.isEmpty());
+    }
+
+    @Test
+    public void finishedExecutionCanNotBeAborted() {
+        ExecutionDeadline deadline = ExecutionDeadline.start(0);
+        List<SQLException> causes = new ArrayList<>();
+        deadline.addListener(causes::add);
+        deadline.finish();
+
+        deadline.abort(new SQLException("cancelled"));
+
+        assertTrue(deadline.isFinished());
+        assertNull(deadline.getAbortCause());
+        assertTrue(causes.isEmpty());
+    }
+
+    @Test
+    public void trackedRequestFailsWithTheAbortCause() {
+        ExecutionDeadline deadline = ExecutionDeadline.start(0);
+        CompletableFuture<String> request = deadline.track(new CompletableFuture<>());
+        SQLException cancelled = new SQLException("cancelled");
+
+        deadline.abort(cancelled);
+
+        assertTrue(request.isCompletedExceptionally());
+        try {
+            request.join();
+            fail();
+        } catch (Exception e) {
+            assertSame(cancelled, e.getCause());
+        }
+    }
+
+    @Test
+    public void completedRequestIsNotTrackedAnyMore() {
+        ExecutionDeadline deadline = ExecutionDeadline.start(0);
+        CompletableFuture<String> request = deadline.track(new CompletableFuture<>());
+        request.complete("reply");
+
+        deadline.abort(new SQLException("cancelled"));
+
+        assertEquals("reply", request.join());
+    }
+
+    @Test
+    public void noneIsNeverAborted() {
+        ExecutionDeadline none = ExecutionDeadline.none();
+        CompletableFuture<String> request = none.track(new CompletableFuture<>());
+
+        none.abort(new SQLException("cancelled"));
+
+        assertNull(none.getAbortCause());
+        assertFalse(request.isDone());
+        assertEquals(5000, none.timeoutMillis(5000));
+    }
+
+    @Test
+    public void requestTimeoutIsCutToTheTimeLeft() {
+        ExecutionDeadline deadline = ExecutionDeadline.start(10);
+        try {
+            assertEquals(500, deadline.timeoutMillis(500));
+            long cut = deadline.timeoutMillis(60_000);
+            assertTrue(String.valueOf(cut), 0 < cut && cut <= 10_000);
+        } finally {
+            deadline.finish();
+        }
+    }
+
+    @Test
+    public void expiredDeadlineAbortsWithTimeout() throws Exception {
+        ExecutionDeadline deadline = ExecutionDeadline.start(1);
+        CompletableFuture<SQLException> aborted = new CompletableFuture<>();
+        deadline.addListener(aborted::complete);
+
+        SQLException cause = aborted.get(5, TimeUnit.SECONDS);
+
+        assertTrue(cause instanceof SQLTimeoutException);
+        assertSame(cause, deadline.getAbortCause());
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void expiredDeadlineFailsTheTrackedRequest() throws Exception {
+        ExecutionDeadline deadline = ExecutionDeadline.start(1);
+        deadline.track(new CompletableFuture<String>()).get(5, TimeUnit.SECONDS);
+    }
+}